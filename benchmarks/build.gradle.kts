@@ -0,0 +1,22 @@
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+java {
+    toolchain.languageVersion.set(JavaLanguageVersion.of(21))
+}
+
+dependencies {
+    implementation(project(":core"))
+}
+
+// ./gradlew :benchmarks:jmh
+// narrow it down with e.g. -PjmhIncludes=LexerBenchmark
+jmh {
+    jmhVersion.set("1.37")
+    profilers.add("gc") // allocation rate (gc.alloc.rate.norm = bytes per operation)
+    jvmArgsAppend.addAll("--add-modules", "jdk.incubator.vector") // LexerBenchmark picks the scanner per trial
+    resultFormat.set("JSON")
+    findProperty("jmhIncludes")?.let { includes.add(it.toString()) }
+}
@@ -0,0 +1,136 @@
+package org.klang.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Deterministic generator of Klang sources stressing one part of the lexer
+ * each. The same kind and size always yield the same text.
+ */
+public final class Corpus {
+
+    public enum Kind {
+        /** Declarations and calls: identifiers and keywords. */
+        IDENTIFIERS,
+        /** Expressions dense in single and multi-character operators. */
+        OPERATORS,
+        /** Indented line and block comments around little code. */
+        COMMENTS,
+        /** Long string and character literals, some with escapes. */
+        STRINGS,
+        /** Data tables of integer and decimal literals. */
+        NUMBERS,
+        /** A mix of all of the above, like real code. */
+        MIXED
+    }
+
+    public enum Size {
+        SMALL(4 * 1024),
+        HUGE(16 * 1024 * 1024);
+
+        final int bytes;
+
+        Size(int bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private static final String[] WORDS = {
+            "value", "count", "index", "buffer", "result", "total", "offset", "length",
+            "userName", "parseToken", "readLine", "maxDepth", "_tmp", "$ctx", "node", "left", "right" };
+
+    private static final String[] TYPES = { "integer", "double", "boolean", "character", "String" };
+
+    private static final String[] OPERATORS = {
+            "+", "-", "*", "/", "%", "**", "==", "!=", "<", "<=", ">", ">=", "&&", "||", "->" };
+
+    private Corpus() {
+    }
+
+    /**
+     * Generates a source of roughly {@code size} bytes (ASCII, so as many
+     * chars), ending with a line break.
+     */
+    public static String generate(Kind kind, Size size) {
+        Random random = new Random(42 + kind.ordinal());
+        StringBuilder sb = new StringBuilder(size.bytes + 256);
+
+        while (sb.length() < size.bytes) {
+            Kind line = kind == Kind.MIXED ? Kind.values()[random.nextInt(Kind.MIXED.ordinal())] : kind;
+            switch (line) {
+                case IDENTIFIERS -> identifiers(sb, random);
+                case OPERATORS -> operators(sb, random);
+                case COMMENTS -> comments(sb, random);
+                case STRINGS -> strings(sb, random);
+                case NUMBERS -> numbers(sb, random);
+                default -> throw new IllegalStateException(line.name());
+            }
+            sb.append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    private static void identifiers(StringBuilder sb, Random random) {
+        sb.append("    ").append(pick(TYPES, random)).append(' ').append(word(random))
+                .append(" = ").append(word(random)).append('(').append(word(random))
+                .append(", ").append(word(random)).append(");");
+    }
+
+    private static void operators(StringBuilder sb, Random random) {
+        sb.append("    x = (a").append(random.nextInt(10));
+        for (int i = 0; i < 8; i++) {
+            sb.append(' ').append(pick(OPERATORS, random)).append(' ').append((char) ('a' + random.nextInt(26)));
+            if (random.nextInt(4) == 0) {
+                sb.append("++");
+            }
+        }
+        sb.append(") ;");
+    }
+
+    private static void comments(StringBuilder sb, Random random) {
+        if (random.nextInt(5) == 0) {
+            sb.append("    /*\n     * ").append(word(random)).append(" keeps track of the ")
+                    .append(word(random)).append(" while scanning.\n     */");
+        } else {
+            sb.append("        // ").append(word(random)).append(" is updated after every ")
+                    .append(word(random)).append(", see the notes above");
+        }
+        if (random.nextInt(4) == 0) {
+            sb.append('\n');
+            identifiers(sb, random);
+        }
+    }
+
+    private static void strings(StringBuilder sb, Random random) {
+        sb.append("    String ").append(word(random)).append(" = \"");
+        int words = 4 + random.nextInt(12);
+        for (int i = 0; i < words; i++) {
+            sb.append(word(random)).append(' ');
+        }
+        if (random.nextInt(4) == 0) {
+            sb.append("\\n\\t\\\"quoted\\\"");
+        }
+        sb.append("\"; character c = '").append((char) ('a' + random.nextInt(26))).append("';");
+    }
+
+    private static void numbers(StringBuilder sb, Random random) {
+        sb.append("    ");
+        for (int i = 0; i < 8; i++) {
+            switch (random.nextInt(3)) {
+                case 0 -> sb.append(random.nextInt(1_000_000));
+                case 1 -> sb.append(random.nextInt(1000)).append('.').append(random.nextInt(100_000));
+                default -> sb.append(random.nextInt(100)).append('_').append(100 + random.nextInt(900));
+            }
+            sb.append(", ");
+        }
+        sb.append("0;");
+    }
+
+    private static String word(Random random) {
+        return pick(WORDS, random);
+    }
+
+    private static String pick(String[] values, Random random) {
+        return values[random.nextInt(values.length)];
+    }
+}
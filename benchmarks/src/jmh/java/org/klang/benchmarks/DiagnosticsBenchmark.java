@@ -0,0 +1,92 @@
+package org.klang.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.klang.core.errors.Diagnostic;
+import org.klang.core.errors.DiagnosticCollector;
+import org.klang.core.errors.DiagnosticPrinter;
+import org.klang.core.errors.SourceCache;
+import org.klang.core.lexer.Lexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of rendering a batch of diagnostics that point into one file, as
+ * {@code kc lex} does for a file full of errors.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DiagnosticsBenchmark {
+
+    @Param({ "100", "5000" })
+    public int diagnostics;
+
+    private Path file;
+    private List<Diagnostic> batch;
+    private DiagnosticPrinter printer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // one bad escape per line, between ordinary code
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < diagnostics; i++) {
+            sb.append("integer value").append(i).append(" = ").append(i).append(";\n");
+            sb.append("String s").append(i).append(" = \"bad \\q escape\";\n");
+        }
+
+        file = Files.createTempFile("klang-bench", ".k");
+        Files.writeString(file, sb);
+
+        DiagnosticCollector collector = new DiagnosticCollector();
+        new Lexer(Files.readString(file), file.toString(), collector).tokenizeToBuffer();
+        batch = collector.all();
+        printer = new DiagnosticPrinter(false, true);
+    }
+
+    /**
+     * Renders the batch with the source context taken from the shared cache
+     * (the lexer registered the file).
+     */
+    @Benchmark
+    public int render() {
+        int length = 0;
+        for (Diagnostic d : batch) {
+            length += printer.render(d).length();
+        }
+        return length;
+    }
+
+    /**
+     * Renders the batch after evicting the file from the cache, so the cost of
+     * loading it is included.
+     */
+    @Benchmark
+    public int renderCold() {
+        SourceCache.shared().invalidate(file.toString());
+        return render();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
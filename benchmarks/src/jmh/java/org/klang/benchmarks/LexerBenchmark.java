@@ -0,0 +1,117 @@
+package org.klang.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.klang.core.lexer.Lexer;
+import org.klang.core.lexer.Token;
+import org.klang.core.lexer.TokenBuffer;
+import org.klang.core.lexer.TokenCursor;
+import org.klang.core.lexer.Utf8Source;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lexer throughput over the generated {@link Corpus}.
+ * <p>
+ * Besides ops/s, every benchmark reports {@code megabytes} (MB/s of UTF-8
+ * source, whatever the input) and {@code tokens} (tokens/s) through
+ * {@link Throughput}; the gc profiler adds the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LexerBenchmark {
+
+    @Param
+    public Corpus.Kind kind;
+
+    @Param
+    public Corpus.Size size;
+
+    /** STRING lexes a decoded String, UTF8 the raw bytes (as kc lex does). */
+    @Param({ "STRING", "UTF8" })
+    public String input;
+
+    /**
+     * Scanner for UTF8 inputs: SIMD needs {@code --add-modules
+     * jdk.incubator.vector}. STRING inputs always use the scalar one, so their
+     * SIMD rows repeat the SCALAR ones.
+     */
+    @Param({ "SCALAR", "SIMD" })
+    public String scanner;
+
+    private CharSequence source;
+    private int bytes;
+    private int tokenCount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // read once, when the lexer first scans: each trial runs in a fork of its own
+        System.setProperty("klang.lexer.simd", String.valueOf(scanner.equals("SIMD")));
+        if (scanner.equals("SIMD") && ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            throw new IllegalStateException("The SIMD scanner needs --add-modules jdk.incubator.vector");
+        }
+
+        String text = Corpus.generate(kind, size);
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        source = input.equals("UTF8") ? Utf8Source.wrap(utf8) : text;
+        bytes = utf8.length;
+        tokenCount = new Lexer(source, null).tokenizeToBuffer().size();
+    }
+
+    @Benchmark
+    public List<Token> tokenize(Throughput throughput) {
+        List<Token> tokens = new Lexer(source, null).tokenize();
+        throughput.add(bytes, tokens.size());
+        return tokens;
+    }
+
+    @Benchmark
+    public TokenBuffer tokenizeToBuffer(Throughput throughput) {
+        TokenBuffer tokens = new Lexer(source, null).tokenizeToBuffer();
+        throughput.add(bytes, tokens.size());
+        return tokens;
+    }
+
+    @Benchmark
+    public int cursor(Throughput throughput) {
+        TokenCursor cursor = new Lexer(source, null).cursor();
+        int checksum = 0;
+        while (cursor.advance()) {
+            checksum += cursor.end();
+        }
+        throughput.add(bytes, tokenCount);
+        return checksum;
+    }
+
+    /**
+     * Per-second counters: megabytes of UTF-8 source and tokens lexed.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public double megabytes;
+        public long tokens;
+
+        void add(int bytes, int tokenCount) {
+            megabytes += bytes / 1_000_000.0;
+            tokens += tokenCount;
+        }
+    }
+}
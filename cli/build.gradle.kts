@@ -1,3 +1,5 @@
+import java.io.OutputStream
+
 plugins {
     application
     java
@@ -48,3 +50,37 @@ tasks {
         enabled = false                  
     }
 }
+
+// AppCDS: a training run lexing the examples records the classes kc loads, so a
+// launch with -XX:SharedArchiveFile maps them pre-parsed and pre-verified instead
+// of loading them from the jar. The archive only matches this jar (its path and
+// timestamp), this JVM and the module options it was made with: none, like
+// cli/bin/k. install.sh makes another one for the installed jar.
+val cdsArchive by tasks.registering(Exec::class) {
+    description = "Creates the AppCDS archive k.jsa next to k.jar with a training run"
+    val jar = tasks.shadowJar.flatMap { it.archiveFile }
+    val archive = jar.map { it.asFile.resolveSibling("k.jsa") }
+    val examples = fileTree(rootProject.file("examples")) { include("*.k") }
+    val launcher = javaToolchains.launcherFor { languageVersion.set(JavaLanguageVersion.of(21)) }
+
+    inputs.file(jar)
+    inputs.files(examples)
+    outputs.file(archive)
+
+    environment("KLANG_NO_DAEMON", "1")
+    standardOutput = OutputStream.nullOutputStream()
+    doFirst {
+        executable = launcher.get().executablePath.asFile.absolutePath
+    }
+    argumentProviders.add(CommandLineArgumentProvider {
+        listOf(
+            "-XX:ArchiveClassesAtExit=${archive.get().absolutePath}",
+            "-jar", jar.get().asFile.absolutePath,
+            "lex"
+        ) + examples.files.map { it.absolutePath }.sorted()
+    })
+}
+
+tasks.build {
+    dependsOn(cdsArchive)
+}
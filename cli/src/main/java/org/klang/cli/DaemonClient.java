@@ -0,0 +1,263 @@
+package org.klang.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.URISyntaxException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.CodeSource;
+import java.util.Set;
+
+/**
+ * Client side of {@code kc daemon}: forwards a command to a running daemon
+ * and relays its output, so the command runs on a warm JVM.
+ * <p>
+ * The protocol, over a Unix domain socket, is a request
+ *
+ * <pre>
+ * int version   byte kind (RUN or STOP)
+ * UTF working directory   UTF stdout charset   UTF stderr charset
+ * int argc   UTF args...
+ * </pre>
+ *
+ * answered by frames: {@code STDOUT} or {@code STDERR} followed by an int
+ * length and that many bytes, until an {@code EXIT} frame with the int exit
+ * code.
+ * <p>
+ * The socket lives in a directory only the user can access, and its name
+ * identifies the build of the CLI, so a client never talks to a daemon of
+ * another user or of another version.
+ */
+final class DaemonClient {
+    static final int VERSION = 1;
+
+    static final byte RUN = 1;
+    static final byte STOP = 2;
+
+    static final byte EXIT = 0;
+    static final byte STDOUT = 1;
+    static final byte STDERR = 2;
+
+    /** Set to any value to never use a daemon. */
+    static final String DISABLE_VARIABLE = "KLANG_NO_DAEMON";
+
+    private static final Set<PosixFilePermission> PRIVATE = PosixFilePermissions.fromString("rwx------");
+
+    private DaemonClient() {
+    }
+
+    /**
+     * Runs the command on the daemon, if one is running and the command can
+     * run there (only {@code lex}: the other commands are interactive or
+     * instant).
+     *
+     * @return The exit code, or null if the command must run in this process
+     */
+    static Integer forward(String[] args) {
+        if (args.length == 0 || !args[0].equals("lex") || System.getenv(DISABLE_VARIABLE) != null) {
+            return null;
+        }
+
+        Path socket = socketPath();
+        if (!Files.exists(socket) || !isPrivate(socket.getParent())) {
+            return null;
+        }
+
+        boolean started = false;
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+            send(channel, RUN, args);
+            started = true;
+            return relay(channel);
+        } catch (IOException e) {
+            if (!started) {
+                return null; // stale socket: no daemon behind it
+            }
+            System.err.println("kc: lost the connection to the daemon: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    /**
+     * Asks the daemon to exit.
+     *
+     * @return false if no daemon is running
+     */
+    static boolean stop() throws IOException {
+        Path socket = socketPath();
+        if (!Files.exists(socket) || !isPrivate(socket.getParent())) {
+            return false;
+        }
+
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            if (!connect(channel, socket)) {
+                return false;
+            }
+            send(channel, STOP, new String[0]);
+            relay(channel);
+            return true;
+        }
+    }
+
+    /**
+     * @return Whether a daemon answers on the socket
+     */
+    static boolean isRunning(Path socket) {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            return connect(channel, socket);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean connect(SocketChannel channel, Path socket) {
+        try {
+            return channel.connect(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void send(SocketChannel channel, byte kind, String[] args) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        out.writeInt(VERSION);
+        out.writeByte(kind);
+        out.writeUTF(Path.of("").toAbsolutePath().toString());
+        out.writeUTF(charset("stdout.encoding").name());
+        out.writeUTF(charset("stderr.encoding").name());
+        out.writeInt(args.length);
+        for (String arg : args) {
+            out.writeUTF(arg);
+        }
+        out.flush();
+    }
+
+    /**
+     * Copies the output frames to this process' stdout and stderr.
+     *
+     * @return The exit code of the command
+     */
+    private static int relay(SocketChannel channel) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        OutputStream stdout = new FileOutputStream(FileDescriptor.out);
+        OutputStream stderr = new FileOutputStream(FileDescriptor.err);
+        byte[] chunk = new byte[64 * 1024];
+
+        while (true) {
+            byte kind;
+            try {
+                kind = in.readByte();
+            } catch (EOFException e) {
+                throw new IOException("the daemon closed the connection");
+            }
+
+            if (kind == EXIT) {
+                return in.readInt();
+            }
+
+            OutputStream target = kind == STDOUT ? stdout : stderr;
+            for (int left = in.readInt(); left > 0;) {
+                int n = in.read(chunk, 0, Math.min(left, chunk.length));
+                if (n < 0) {
+                    throw new IOException("the daemon closed the connection");
+                }
+                target.write(chunk, 0, n);
+                left -= n;
+            }
+        }
+    }
+
+    /**
+     * The socket of the daemon for this build of the CLI, in a directory of
+     * the user under the temporary directory.
+     */
+    static Path socketPath() {
+        Path directory = Path.of(System.getProperty("java.io.tmpdir"), "klang-" + System.getProperty("user.name"));
+        return directory.resolve("kc-" + buildId() + ".sock");
+    }
+
+    /**
+     * Creates the socket directory if needed, readable by the user only.
+     *
+     * @throws IOException if it cannot be created, or someone else can access it
+     */
+    static void createPrivateDirectory(Path directory) throws IOException {
+        if (!Files.exists(directory, LinkOption.NOFOLLOW_LINKS)) {
+            if (supportsPosix(directory.getParent())) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PRIVATE));
+            } else {
+                Files.createDirectories(directory);
+            }
+        }
+
+        if (!isPrivate(directory)) {
+            throw new IOException(directory + " must be a directory owned and accessible only by "
+                    + System.getProperty("user.name"));
+        }
+    }
+
+    /**
+     * @return Whether the directory belongs to the user and nobody else can
+     *         access it (on file systems without POSIX permissions, whether it
+     *         belongs to the user)
+     */
+    private static boolean isPrivate(Path directory) {
+        try {
+            if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+                return false;
+            }
+            UserPrincipal user = directory.getFileSystem().getUserPrincipalLookupService()
+                    .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!Files.getOwner(directory, LinkOption.NOFOLLOW_LINKS).equals(user)) {
+                return false;
+            }
+            return !supportsPosix(directory)
+                    || Files.getPosixFilePermissions(directory, LinkOption.NOFOLLOW_LINKS).equals(PRIVATE);
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static boolean supportsPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    /**
+     * Identifies the build: the location and modification time of the jar (or
+     * class directory) the CLI runs from.
+     */
+    private static String buildId() {
+        try {
+            CodeSource source = DaemonClient.class.getProtectionDomain().getCodeSource();
+            Path location = Path.of(source.getLocation().toURI());
+            long hash = location.toString().hashCode() * 31L + Files.getLastModifiedTime(location).toMillis();
+            return Long.toHexString(hash);
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return "dev";
+        }
+    }
+
+    private static Charset charset(String property) {
+        String name = System.getProperty(property);
+        try {
+            return name != null ? Charset.forName(name) : Charset.defaultCharset();
+        } catch (IllegalArgumentException e) {
+            return Charset.defaultCharset();
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package org.klang.cli;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.klang.core.errors.SourceCache;
+
+/**
+ * {@code kc daemon}: keeps a warm JVM that runs {@code kc lex} for the
+ * clients that connect to it (see {@link DaemonClient}).
+ * <p>
+ * Requests are served one at a time: a command writes to
+ * {@code System.out} and {@code System.err}, which are redirected to the
+ * client while it runs. A client that stops sending or reading for
+ * {@value #CLIENT_TIMEOUT_SECONDS} seconds is disconnected, so it cannot hold
+ * up the others, and a failing request only fails that request.
+ */
+@Command(name = "daemon", description = "Serve kc lex from a warm JVM until stopped")
+public class DaemonCommand implements Callable<Integer> {
+    static final long CLIENT_TIMEOUT_SECONDS = 30;
+
+    @Option(names = "--stop", description = "Stop the running daemon")
+    private boolean stop;
+
+    @Override
+    public Integer call() throws IOException {
+        if (stop) {
+            if (!DaemonClient.stop()) {
+                System.err.println("kc: no daemon is running");
+                return 1;
+            }
+            return 0;
+        }
+
+        Path socket = DaemonClient.socketPath();
+        DaemonClient.createPrivateDirectory(socket.getParent());
+        if (DaemonClient.isRunning(socket)) {
+            System.err.println("kc: a daemon is already running on " + socket);
+            return 1;
+        }
+        Files.deleteIfExists(socket); // left behind by a daemon that was killed
+
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "kc-daemon-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Thread cleanup = new Thread(() -> deleteSocket(socket));
+            Runtime.getRuntime().addShutdownHook(cleanup);
+
+            System.out.println("kc daemon listening on " + socket);
+            boolean running = true;
+            while (running) {
+                try (SocketChannel client = server.accept()) {
+                    running = serve(new Watchdog(timer, client));
+                } catch (AsynchronousCloseException e) {
+                    System.err.println("kc daemon: client timed out after " + CLIENT_TIMEOUT_SECONDS + " s");
+                } catch (IOException e) {
+                    System.err.println("kc daemon: " + e.getMessage()); // that client is gone; keep serving
+                } catch (Throwable e) {
+                    e.printStackTrace(); // e.g. a malformed request; keep serving
+                } finally {
+                    SourceCache.shared().clear(); // the next client's files may differ under the same names
+                }
+            }
+
+            Runtime.getRuntime().removeShutdownHook(cleanup);
+        } finally {
+            timer.shutdownNow();
+            deleteSocket(socket);
+        }
+        return 0;
+    }
+
+    /**
+     * Reads one request and runs it.
+     *
+     * @return false if the daemon was asked to stop
+     */
+    private static boolean serve(Watchdog watchdog) throws IOException {
+        SocketChannel client = watchdog.client;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)));
+
+        byte kind;
+        Path workingDirectory;
+        Charset stdoutCharset;
+        Charset stderrCharset;
+        String[] args;
+        ScheduledFuture<?> timeout = watchdog.start();
+        try {
+            if (in.readInt() != DaemonClient.VERSION) {
+                exit(out, watchdog, 2);
+                return true;
+            }
+            kind = in.readByte();
+            workingDirectory = Path.of(in.readUTF());
+            stdoutCharset = Charset.forName(in.readUTF());
+            stderrCharset = Charset.forName(in.readUTF());
+            args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readUTF();
+            }
+        } finally {
+            timeout.cancel(false);
+        }
+
+        if (kind == DaemonClient.STOP) {
+            exit(out, watchdog, 0);
+            return false;
+        }
+
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        int code;
+        try (PrintStream clientOut = new PrintStream(new FrameStream(out, watchdog, DaemonClient.STDOUT), true,
+                stdoutCharset);
+                PrintStream clientErr = new PrintStream(new FrameStream(out, watchdog, DaemonClient.STDERR), true,
+                        stderrCharset)) {
+            // System.out is global: redirecting it is only safe because requests are served one at a time
+            System.setOut(clientOut);
+            System.setErr(clientErr);
+            try {
+                code = args.length > 0 && args[0].equals("lex")
+                        ? KMain.execute(inDirectory(args, workingDirectory))
+                        : unsupported(args);
+            } catch (Throwable e) { // even an OutOfMemoryError only fails this request
+                e.printStackTrace();
+                code = 2;
+            }
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+
+        exit(out, watchdog, code);
+        return true;
+    }
+
+    /**
+     * Makes the arguments of a client's command independent of the daemon's
+     * working directory: {@code kc lex} is told the client's directory, and
+     * relative {@code @file} arguments (expanded by picocli) are resolved
+     * against it.
+     */
+    private static String[] inDirectory(String[] args, Path workingDirectory) {
+        String[] result = new String[args.length + 1];
+        result[0] = args[0];
+        result[1] = "--working-directory=" + workingDirectory;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("@") && !arg.startsWith("@@") && arg.length() > 1) {
+                arg = "@" + workingDirectory.resolve(arg.substring(1));
+            }
+            result[i + 1] = arg;
+        }
+        return result;
+    }
+
+    private static int unsupported(String[] args) {
+        System.err.println("kc daemon: only lex is served, not " + String.join(" ", args));
+        return 2;
+    }
+
+    private static void exit(DataOutputStream out, Watchdog watchdog, int code) throws IOException {
+        ScheduledFuture<?> timeout = watchdog.start();
+        try {
+            synchronized (out) {
+                out.writeByte(DaemonClient.EXIT);
+                out.writeInt(code);
+                out.flush();
+            }
+        } finally {
+            timeout.cancel(false);
+        }
+    }
+
+    private static void deleteSocket(Path socket) {
+        try {
+            Files.deleteIfExists(socket);
+        } catch (IOException e) {
+            // removed by the next daemon
+        }
+    }
+
+    /**
+     * Bounds the blocking reads and writes on a client's channel: UNIX domain
+     * channels have no read timeout, so the channel is closed instead when an
+     * operation has not completed in time, which fails that operation.
+     */
+    private static final class Watchdog {
+        private final ScheduledExecutorService timer;
+        private final SocketChannel client;
+
+        Watchdog(ScheduledExecutorService timer, SocketChannel client) {
+            this.timer = timer;
+            this.client = client;
+        }
+
+        /**
+         * @return A handle to cancel once the operation has completed
+         */
+        ScheduledFuture<?> start() {
+            return timer.schedule(() -> {
+                try {
+                    client.close();
+                } catch (IOException e) {
+                    // already closed
+                }
+            }, CLIENT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Sends everything written to it as frames of one kind, buffering up to a
+     * frame of 64 KB.
+     */
+    private static final class FrameStream extends OutputStream {
+        private final DataOutputStream out;
+        private final Watchdog watchdog;
+        private final byte kind;
+        private final byte[] buffer = new byte[64 * 1024];
+        private int count;
+
+        FrameStream(DataOutputStream out, Watchdog watchdog, byte kind) {
+            this.out = out;
+            this.watchdog = watchdog;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flush();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > buffer.length - count) {
+                flush();
+            }
+            if (len >= buffer.length) {
+                send(b, off, len);
+                return;
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                send(buffer, 0, count);
+                count = 0;
+            }
+        }
+
+        private void send(byte[] b, int off, int len) throws IOException {
+            ScheduledFuture<?> timeout = watchdog.start();
+            try {
+                synchronized (out) {
+                    out.writeByte(kind);
+                    out.writeInt(len);
+                    out.write(b, off, len);
+                    out.flush();
+                }
+            } finally {
+                timeout.cancel(false);
+            }
+        }
+    }
+}
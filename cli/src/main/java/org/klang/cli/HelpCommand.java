@@ -35,6 +35,7 @@ public class HelpCommand implements Runnable {
         // Commands
         System.out.println(WINE + BOLD + "  Commands" + RESET);
         System.out.println("    " + BOLD + "lex" + RESET + "              Show tokens of a .k source file");
+        System.out.println("    " + BOLD + "daemon" + RESET + "           Serve kc lex from a warm JVM (--stop to end it)");
         System.out.println("    " + BOLD + "gen-completion" + RESET + "   Generate autocomplete script");
         System.out.println();
 
@@ -47,6 +48,8 @@ public class HelpCommand implements Runnable {
         // Examples
         System.out.println(WINE + BOLD + "  Examples" + RESET);
         System.out.println("    kc lex file.k");
+        System.out.println("    kc lex --summary src/ 'examples/*.k' @files.txt");
+        System.out.println("    kc lex --stats --stats-format json big.k > /dev/null");
         System.out.println("    kc gen-completion bash");
         System.out.println();
 
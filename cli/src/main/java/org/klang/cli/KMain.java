@@ -10,6 +10,7 @@ import picocli.CommandLine;
 
 @Command(name = "kc", description = "Klang CLI", mixinStandardHelpOptions = false, versionProvider = KVersionProvider.class, subcommands = {
         LexCommand.class,
+        DaemonCommand.class,
         GenerateCompletion.class,
         HelpCommand.class,
         UpdateCommand.class
@@ -39,16 +40,33 @@ public class KMain implements Runnable {
     }
 
     public static void main(String[] args) {
+        // the version needs no command model: skip building it
+        if (args.length == 1 && (args[0].equals("-V") || args[0].equals("--version"))) {
+            for (String line : new KVersionProvider().getVersion()) {
+                System.out.println(line);
+            }
+            System.exit(0);
+        }
+
+        // a running `kc daemon` saves the JVM startup and warm-up; otherwise run here
+        Integer forwarded = DaemonClient.forward(args);
+        System.exit(forwarded != null ? forwarded : execute(args));
+    }
+
+    /**
+     * Runs a command in this JVM.
+     *
+     * @return The exit code
+     */
+    static int execute(String[] args) {
         try {
-            int exitCode = new CommandLine(new KMain()).execute(args);
-            System.exit(exitCode);
+            return new CommandLine(new KMain()).execute(args);
         } catch (DiagnosticException e) {
             // print all collector diagnostics instead of stacktrace
             DiagnosticPrinter p = new DiagnosticPrinter(true, true);
             p.print(e.diagnostic);
-            System.exit(1);
+            return 1;
         }
-
     }
 
 }
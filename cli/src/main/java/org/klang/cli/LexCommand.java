@@ -1,30 +1,364 @@
 package org.klang.cli;
 
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
-import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 import org.klang.core.errors.Diagnostic;
+import org.klang.core.errors.DiagnosticCollector;
 import org.klang.core.errors.DiagnosticException;
 import org.klang.core.errors.DiagnosticPrinter;
 import org.klang.core.errors.DiagnosticType;
 import org.klang.core.errors.Note;
 import org.klang.core.errors.Span;
 import org.klang.core.lexer.Lexer;
+import org.klang.core.lexer.ParallelLexer;
+import org.klang.core.lexer.TokenBuffer;
+import org.klang.core.lexer.TokenCache;
+import org.klang.core.lexer.TokenCursor;
+import org.klang.core.lexer.Utf8Source;
 
 @Command(name = "lex", description = "Show file tokens")
-public class LexCommand implements Runnable {
+public class LexCommand implements Callable<Integer> {
 
-    @Parameters(paramLabel = "FILE")
-    private File file;
+    @Parameters(paramLabel = "FILE", arity = "1..*", description = "Files, directories or glob patterns "
+            + "(@file reads the list from a file)")
+    private List<String> inputs;
 
+    @Option(names = "--summary", description = "Print one summary line per file instead of its tokens")
+    private boolean summary;
+
+    @Option(names = { "-j", "--jobs" }, paramLabel = "N", description = "Files lexed in parallel "
+            + "(default: number of CPUs)")
+    private int jobs = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = "--no-cache", description = "Do not read nor write the token cache "
+            + "(used when a " + TokenCache.DIRECTORY + " directory exists)")
+    private boolean noCache;
+
+    @Option(names = "--format", paramLabel = "FORMAT", description = "Token output: text (default), jsonl "
+            + "or binary")
+    private String format = "text";
+
+    @Option(names = "--stats", description = "Report read, lex and output times, throughput, token counts "
+            + "and memory use per file and in total, on stderr")
+    private boolean stats;
+
+    @Option(names = "--stats-format", paramLabel = "FORMAT", description = "Report format: human (default) "
+            + "or json")
+    private String statsFormat = "human";
+
+    // set by kc daemon: relative paths are resolved against the client's directory, not the daemon's
+    @Option(names = "--working-directory", hidden = true)
+    private Path workingDirectory;
+
+    private TokenCache cache; // null when caching is off
+    private boolean singleFile; // a lone large file is split across cores
+    private LexStats statistics; // null without --stats
+    private TokenWriter out;
+
+    /**
+     * @return The exit code: 0 on success, 1 if lexical errors were found (or
+     *         the arguments are wrong), 2 on unexpected errors
+     */
     @Override
-    public void run() {
+    public Integer call() {
+        try {
+            List<Path> files = expandInputs();
+            cache = noCache ? null : TokenCache.find(resolve(Path.of("")));
+            TokenWriter.Format tokenFormat = parseFormat();
+            statistics = stats ? new LexStats(parseStatsFormat()) : null;
+
+            boolean failed;
+            try (TokenWriter writer = new TokenWriter(System.out, tokenFormat)) {
+                out = writer;
+                boolean single = files.size() == 1 && !isExpanded(inputs.get(0));
+                singleFile = files.size() == 1;
+                if (single && !summary && statistics == null) {
+                    failed = cache == null ? lexStreaming(files.get(0)) : lexCached(files.get(0));
+                } else {
+                    // --stats goes through here even for one file, to time each phase apart
+                    failed = lexAll(files, !single);
+                }
+            }
+
+            if (statistics != null) {
+                statistics.print(System.err);
+            }
+
+            return failed ? 1 : 0;
+
+        } catch (DiagnosticException e) {
+            DiagnosticPrinter printer = new DiagnosticPrinter(true, true);
+            printer.print(e.diagnostic);
+
+            return 1;
+        } catch (Exception e) {
+            // unexpected errors → stacktrace
+            e.printStackTrace();
+            return 2;
+        }
+    }
+
+    /**
+     * Lexes a single file, printing tokens as they are produced. A file of at
+     * least {@link ParallelLexer#MIN_PARALLEL_SIZE} is lexed on every core
+     * first and printed after.
+     *
+     * @return true if lexical errors were found
+     */
+    private boolean lexStreaming(Path path) throws IOException {
+        // recovery mode: report every lexical error in a single pass
+        DiagnosticCollector diagnostics = new DiagnosticCollector();
+        Utf8Source source = Utf8Source.map(resolve(path));
+
+        if (splits(source)) {
+            TokenBuffer tokens = tokenize(resolve(path), source, diagnostics);
+            out.file(path.toString(), false);
+            out.tokens(tokens);
+
+            printDiagnostics(diagnostics);
+            return diagnostics.hasErrors();
+        }
+
+        Lexer lexer = new Lexer(source, resolve(path).toString(), diagnostics);
+        TokenCursor cursor = lexer.cursor();
+        out.file(path.toString(), false);
+        while (cursor.advance()) {
+            out.token(cursor.type(), cursor.start(), cursor.end(), cursor.text());
+        }
+
+        printDiagnostics(diagnostics);
+        return diagnostics.hasErrors();
+    }
+
+    /**
+     * Lexes a single file through the token cache, printing its tokens.
+     *
+     * @return true if lexical errors were found
+     */
+    private boolean lexCached(Path path) throws IOException {
+        long start = System.nanoTime();
+        Utf8Source source = Utf8Source.map(resolve(path));
+        LexResult result = lex(path, source, System.nanoTime() - start);
+        out.file(path.toString(), false);
+        out.tokens(result.tokens());
+
+        printDiagnostics(result.diagnostics());
+        return result.diagnostics().hasErrors();
+    }
+
+    /**
+     * Lexes many files in one process: files are read on virtual threads, lexed
+     * on a pool bounded by {@code --jobs}, and printed in input order.
+     * <p>
+     * Only a window of {@code 2 * jobs} files is in flight at a time, so a large
+     * directory neither opens every file at once nor holds every source in
+     * memory: the next file starts when the oldest one has been printed.
+     *
+     * @param headers Whether text output shows a header per file
+     * @return true if lexical errors were found in any file
+     */
+    private boolean lexAll(List<Path> files, boolean headers) throws InterruptedException {
+        boolean failed = false;
+        int totalTokens = 0;
+
+        int window = 2 * Math.max(1, jobs); // keeps the pool busy while the oldest file is printed
+        ExecutorService lexPool = Executors.newFixedThreadPool(Math.max(1, jobs));
+        try (ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor()) {
+            Iterator<Path> next = files.iterator();
+            Deque<Future<LexResult>> pending = new ArrayDeque<>(window);
+            while (pending.size() < window && next.hasNext()) {
+                pending.add(submit(next.next(), readers, lexPool));
+            }
+
+            while (!pending.isEmpty()) {
+                LexResult result = join(pending.poll());
+                if (next.hasNext()) {
+                    pending.add(submit(next.next(), readers, lexPool));
+                }
+
+                long outputStart = System.nanoTime();
+                if (summary) {
+                    out.line(result.file() + ": " + result.tokens().size() + " tokens, "
+                            + result.diagnostics().all().size() + " errors");
+                } else {
+                    out.file(result.file().toString(), headers);
+                    out.tokens(result.tokens());
+                }
+
+                printDiagnostics(result.diagnostics());
+                if (statistics != null) {
+                    statistics.add(result.file(), result.bytes(), result.tokens(), result.cached(),
+                            result.readNanos(), result.lexNanos(), System.nanoTime() - outputStart,
+                            result.allocated());
+                }
+
+                failed |= result.diagnostics().hasErrors();
+                totalTokens += result.tokens().size();
+            }
+        } finally {
+            lexPool.shutdownNow();
+        }
+
+        if (summary) {
+            out.line(files.size() + " files, " + totalTokens + " tokens");
+        }
+
+        if (statistics != null) {
+            long flushStart = System.nanoTime();
+            out.flush();
+            statistics.addFlush(System.nanoTime() - flushStart);
+        }
+
+        return failed;
+    }
+
+    /**
+     * Reads a file on a virtual thread and lexes it on the pool.
+     */
+    private Future<LexResult> submit(Path file, ExecutorService readers, ExecutorService lexPool) {
+        return readers.submit(() -> {
+            long start = System.nanoTime();
+            Utf8Source source = Utf8Source.wrap(Files.readAllBytes(resolve(file)));
+            long readNanos = System.nanoTime() - start;
+            return lexPool.submit(() -> lex(file, source, readNanos)).get();
+        });
+    }
+
+    /**
+     * Lexes a file, or loads its tokens from the cache. Only files without
+     * diagnostics are cached.
+     *
+     * @param readNanos Time it took to read the file, kept for {@code --stats}
+     */
+    private LexResult lex(Path file, Utf8Source source, long readNanos) {
+        long allocated = statistics == null ? -1 : LexStats.threadAllocated();
+        long start = System.nanoTime();
+
+        DiagnosticCollector diagnostics = new DiagnosticCollector();
+        TokenBuffer tokens = cache == null ? null : cache.get(source);
+        boolean cached = tokens != null;
+        if (!cached) {
+            tokens = tokenize(resolve(file), source, diagnostics);
+            if (cache != null && diagnostics.all().isEmpty()) {
+                cache.put(source, tokens);
+            }
+        }
+
+        long lexNanos = System.nanoTime() - start;
+        if (allocated >= 0) {
+            // a split file also allocates on the pool threads, which are not measured
+            allocated = splits(source) ? -1 : LexStats.threadAllocated() - allocated;
+        }
+        return new LexResult(file, source.length(), tokens, diagnostics, cached, readNanos, lexNanos, allocated);
+    }
+
+    /**
+     * Lexes a whole file in recovery mode, split across the common pool when
+     * {@link #splits} says so.
+     */
+    private TokenBuffer tokenize(Path file, Utf8Source source, DiagnosticCollector diagnostics) {
+        if (splits(source)) {
+            return ParallelLexer.tokenize(source, file.toString(), diagnostics, ForkJoinPool.commonPool());
+        }
+        return new Lexer(source, file.toString(), diagnostics).tokenizeToBuffer();
+    }
+
+    /**
+     * Checks if a file is lexed on several cores: only when it is the only
+     * file and at least {@link ParallelLexer#MIN_PARALLEL_SIZE} long. With many
+     * files, the files themselves already keep every core busy.
+     */
+    private boolean splits(Utf8Source source) {
+        return singleFile && source.length() >= ParallelLexer.MIN_PARALLEL_SIZE;
+    }
+
+    private static LexResult join(Future<LexResult> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof ExecutionException inner ? inner.getCause() : e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void printDiagnostics(DiagnosticCollector diagnostics) {
+        if (!diagnostics.all().isEmpty()) {
+            out.flush(); // keep tokens and diagnostics in order on a terminal
+            new DiagnosticPrinter(true, true).printAll(diagnostics);
+        }
+    }
+
+    private TokenWriter.Format parseFormat() {
+        return parseChoice(TokenWriter.Format.class, format, "output format");
+    }
+
+    private LexStats.Format parseStatsFormat() {
+        return parseChoice(LexStats.Format.class, statsFormat, "stats format");
+    }
+
+    private static <E extends Enum<E>> E parseChoice(Class<E> choices, String value, String what) {
         try {
-            Path path = file.toPath();
+            return Enum.valueOf(choices, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            List<String> names = Stream.of(choices.getEnumConstants())
+                    .map(c -> c.name().toLowerCase(Locale.ROOT))
+                    .toList();
+
+            Diagnostic d = Diagnostic.builder(DiagnosticType.TYPE, "Unknown " + what + ": " + value)
+                    .primary(new Span(null, 1, 1, 1, 1))
+                    .addNote(new Note("Use one of: " + String.join(", ", names) + "."))
+                    .build();
+
+            throw new DiagnosticException(d);
+        }
+    }
+
+    /**
+     * Expands the inputs into a deterministic list of .k files: plain files are
+     * kept as given, directories are walked recursively and glob patterns are
+     * matched from their non-wildcard prefix, both in sorted order.
+     */
+    private List<Path> expandInputs() throws IOException {
+        Set<Path> files = new LinkedHashSet<>();
+
+        for (String input : inputs) {
+            if (isGlob(input)) {
+                files.addAll(matchGlob(input));
+                continue;
+            }
+
+            Path path = Path.of(input);
+            if (Files.isDirectory(resolve(path))) {
+                files.addAll(walk(path, p -> true));
+                continue;
+            }
 
             if (!path.getFileName().toString().endsWith(".k")) {
 
@@ -38,21 +372,78 @@ public class LexCommand implements Runnable {
                 throw new DiagnosticException(d);
             }
 
-            String source = Files.readString(path);
+            files.add(path);
+        }
 
-            Lexer lexer = new Lexer(source, file.getPath());
-            lexer.tokenize().forEach(System.out::println);
+        if (files.isEmpty()) {
+            Diagnostic d = Diagnostic.builder(DiagnosticType.TYPE, "No .k files found in " + inputs)
+                    .primary(new Span(null, 1, 1, 1, 1))
+                    .addNote(new Note("Check the directory or pattern you passed."))
+                    .build();
 
-        } catch (DiagnosticException e) {
-            DiagnosticPrinter printer = new DiagnosticPrinter(true, true);
-            printer.print(e.diagnostic);
+            throw new DiagnosticException(d);
+        }
 
-            System.exit(1);
-        } catch (Exception e) {
-            // unexpected errors → stacktrace
-            e.printStackTrace();
-            System.exit(2);
+        return new ArrayList<>(files);
+    }
+
+    private boolean isExpanded(String input) {
+        return isGlob(input) || Files.isDirectory(resolve(Path.of(input)));
+    }
+
+    private static boolean isGlob(String input) {
+        return firstWildcard(input) >= 0;
+    }
+
+    private static int firstWildcard(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            switch (input.charAt(i)) {
+                case '*', '?', '[', '{' -> {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private List<Path> matchGlob(String pattern) throws IOException {
+        // walk from the longest directory prefix without wildcards
+        String normalized = pattern.replace('\\', '/');
+        int slash = normalized.lastIndexOf('/', firstWildcard(normalized));
+        Path base = slash < 0 ? Path.of("") : Path.of(normalized.substring(0, slash + 1));
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalized);
+
+        return walk(base, matcher::matches);
+    }
+
+    private List<Path> walk(Path root, Predicate<Path> filter) throws IOException {
+        // paths are reported relative to the root as given (an empty root is the working directory)
+        Path start = resolve(root.toString().isEmpty() ? Path.of(".") : root);
+        if (!Files.isDirectory(start)) {
+            return List.of();
+        }
+
+        try (Stream<Path> paths = Files.walk(start)) {
+            return paths
+                    .map(p -> root.resolve(start.relativize(p)))
+                    .filter(p -> p.getFileName() != null && p.getFileName().toString().endsWith(".k"))
+                    .filter(p -> Files.isRegularFile(resolve(p)))
+                    .filter(filter)
+                    .sorted()
+                    .toList();
         }
     }
 
+    /**
+     * Resolves a path as given on the command line to the file it names. Under
+     * {@code kc daemon} the result is absolute, so it is also the file name
+     * diagnostics carry: they are rendered by reading the file in the daemon.
+     */
+    private Path resolve(Path path) {
+        return workingDirectory == null ? path : workingDirectory.resolve(path);
+    }
+
+    private record LexResult(Path file, int bytes, TokenBuffer tokens, DiagnosticCollector diagnostics,
+            boolean cached, long readNanos, long lexNanos, long allocated) {
+    }
 }
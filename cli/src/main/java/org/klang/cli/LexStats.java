@@ -0,0 +1,272 @@
+package org.klang.cli;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.klang.core.lexer.TokenBuffer;
+import org.klang.core.lexer.TokenType;
+
+/**
+ * Collects the {@code kc lex --stats} report: per file, the time spent
+ * reading, lexing and writing it, the resulting throughput, the bytes
+ * allocated while lexing and a histogram of its token types; in total, the
+ * same plus the wall time, the bytes allocated by the whole run and the peak
+ * heap usage.
+ * <p>
+ * Per-file throughput is measured against the lex time, the total throughput
+ * against the wall time (files are read and lexed in parallel, so the phase
+ * times of the total are summed over threads).
+ */
+final class LexStats {
+
+    enum Format {
+        HUMAN, JSON
+    }
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final Format format;
+    private final List<FileStats> files = new ArrayList<>();
+    private final long startNanos;
+    private final long startAllocated;
+    private long flushNanos; // output not attributed to a file
+
+    LexStats(Format format) {
+        this.format = format;
+        for (MemoryPoolMXBean pool : heapPools()) {
+            pool.resetPeakUsage();
+        }
+        this.startNanos = System.nanoTime();
+        this.startAllocated = totalAllocated();
+    }
+
+    /**
+     * Bytes allocated so far by the current thread, or -1 if the JVM cannot
+     * tell.
+     */
+    static long threadAllocated() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean hotspot && hotspot.isThreadAllocatedMemoryEnabled()) {
+            return hotspot.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    /**
+     * Records a file.
+     *
+     * @param allocated Bytes allocated while lexing it, or -1 if unknown
+     */
+    void add(Path file, int bytes, TokenBuffer tokens, boolean cached, long readNanos, long lexNanos,
+            long outputNanos, long allocated) {
+        int[] histogram = new int[TYPES.length];
+        for (int i = 0; i < tokens.size(); i++) {
+            histogram[tokens.type(i).ordinal()]++;
+        }
+        files.add(new FileStats(file.toString(), bytes, tokens.size(), cached, readNanos, lexNanos, outputNanos,
+                allocated, histogram));
+    }
+
+    /**
+     * Records output time not attributed to any file (the final flush).
+     */
+    void addFlush(long nanos) {
+        flushNanos += nanos;
+    }
+
+    /**
+     * Prints the report in one write.
+     */
+    void print(PrintStream stream) {
+        FileStats total = total();
+        long wallNanos = System.nanoTime() - startNanos;
+        long allocated = totalAllocated();
+        long runAllocated = allocated < 0 || startAllocated < 0 ? -1 : allocated - startAllocated;
+        long peakHeap = peakHeap();
+
+        StringBuilder sb = new StringBuilder();
+        if (format == Format.JSON) {
+            sb.append("{\"files\":[");
+            for (int i = 0; i < files.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                json(sb, files.get(i), true, files.get(i).lexNanos);
+                sb.append('}');
+            }
+            sb.append("],\"total\":");
+            json(sb, total, false, wallNanos);
+            sb.append(",\"files\":").append(files.size())
+                    .append(",\"wallMs\":").append(millis(wallNanos))
+                    .append(",\"runAllocatedBytes\":").append(runAllocated)
+                    .append(",\"peakHeapBytes\":").append(peakHeap)
+                    .append("}}\n");
+        } else {
+            for (FileStats file : files) {
+                human(sb, file, file.lexNanos);
+            }
+            human(sb, total, wallNanos);
+            sb.append("  ").append(files.size()).append(files.size() == 1 ? " file in " : " files in ")
+                    .append(millis(wallNanos)).append(" ms wall");
+            sb.append(", ").append(size(runAllocated)).append(" allocated by the run");
+            sb.append(", peak heap ").append(size(peakHeap)).append('\n');
+        }
+
+        stream.print(sb);
+        stream.flush();
+    }
+
+    private FileStats total() {
+        int[] histogram = new int[TYPES.length];
+        long bytes = 0;
+        int tokens = 0;
+        long read = 0;
+        long lex = 0;
+        long output = flushNanos;
+        long allocated = 0;
+        for (FileStats file : files) {
+            bytes += file.bytes;
+            tokens += file.tokens;
+            read += file.readNanos;
+            lex += file.lexNanos;
+            output += file.outputNanos;
+            allocated = allocated < 0 || file.allocated < 0 ? -1 : allocated + file.allocated;
+            for (int t = 0; t < histogram.length; t++) {
+                histogram[t] += file.histogram[t];
+            }
+        }
+        return new FileStats("total", bytes, tokens, false, read, lex, output, allocated, histogram);
+    }
+
+    private static void human(StringBuilder sb, FileStats stats, long throughputNanos) {
+        sb.append(stats.name).append(": ").append(stats.bytes).append(" bytes, ")
+                .append(stats.tokens).append(" tokens").append(stats.cached ? " (cached)" : "").append('\n');
+        sb.append("  read ").append(millis(stats.readNanos)).append(" ms, lex ").append(millis(stats.lexNanos))
+                .append(" ms, output ").append(millis(stats.outputNanos)).append(" ms\n");
+        sb.append("  ").append(size(perSecond(stats.bytes, throughputNanos))).append("/s, ")
+                .append(perSecond(stats.tokens, throughputNanos)).append(" tokens/s, ")
+                .append(size(stats.allocated)).append(" allocated lexing\n");
+
+        sb.append(' ');
+        for (int t : byCount(stats.histogram)) {
+            sb.append(' ').append(TYPES[t].name()).append('=').append(stats.histogram[t]);
+        }
+        sb.append('\n');
+    }
+
+    /**
+     * Writes the fields of a stats object, leaving it open.
+     */
+    private static void json(StringBuilder sb, FileStats stats, boolean named, long throughputNanos) {
+        sb.append('{');
+        if (named) {
+            sb.append("\"file\":\"").append(jsonEscape(stats.name)).append("\",");
+        }
+        sb.append("\"bytes\":").append(stats.bytes)
+                .append(",\"tokens\":").append(stats.tokens)
+                .append(",\"cached\":").append(stats.cached)
+                .append(",\"readMs\":").append(millis(stats.readNanos))
+                .append(",\"lexMs\":").append(millis(stats.lexNanos))
+                .append(",\"outputMs\":").append(millis(stats.outputNanos))
+                .append(",\"bytesPerSec\":").append(perSecond(stats.bytes, throughputNanos))
+                .append(",\"tokensPerSec\":").append(perSecond(stats.tokens, throughputNanos))
+                .append(",\"allocatedBytes\":").append(stats.allocated)
+                .append(",\"histogram\":{");
+
+        boolean first = true;
+        for (int t : byCount(stats.histogram)) {
+            sb.append(first ? "" : ",").append('"').append(TYPES[t].name()).append("\":").append(stats.histogram[t]);
+            first = false;
+        }
+        sb.append('}');
+    }
+
+    /**
+     * The token types that occur, most frequent first (ties in declaration
+     * order).
+     */
+    private static List<Integer> byCount(int[] histogram) {
+        List<Integer> types = new ArrayList<>();
+        for (int t = 0; t < histogram.length; t++) {
+            if (histogram[t] > 0) {
+                types.add(t);
+            }
+        }
+        types.sort((a, b) -> histogram[a] != histogram[b] ? Integer.compare(histogram[b], histogram[a])
+                : Integer.compare(a, b));
+        return types;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static long perSecond(long amount, long nanos) {
+        return nanos <= 0 ? 0 : (long) (amount * 1e9 / nanos);
+    }
+
+    private static String size(long bytes) {
+        if (bytes < 0) {
+            return "? B";
+        }
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f KB", bytes / 1024.0);
+        }
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024));
+    }
+
+    private static String jsonEscape(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Bytes allocated by all threads since the JVM started, or -1 if the JVM
+     * cannot tell.
+     */
+    private static long totalAllocated() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean hotspot && hotspot.isThreadAllocatedMemoryEnabled()) {
+            return hotspot.getTotalThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heapPools()) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isValid())
+                .toList();
+    }
+
+    private record FileStats(String name, long bytes, int tokens, boolean cached, long readNanos, long lexNanos,
+            long outputNanos, long allocated, int[] histogram) {
+    }
+}
@@ -0,0 +1,296 @@
+package org.klang.cli;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.klang.core.lexer.TokenBuffer;
+import org.klang.core.lexer.TokenType;
+
+/**
+ * Writes token dumps to a channel through one large buffer, encoding tokens
+ * straight into bytes: no {@code Token} objects, no string concatenation and
+ * no per-line flush.
+ * <p>
+ * Formats:
+ * <ul>
+ * <li>{@code text}: the classic {@code TYPE} / {@code TYPE(value)} lines, with
+ * a {@code ==> file <==} header per file when several are dumped;</li>
+ * <li>{@code jsonl}: a {@code {"file":...}} record per file, then one
+ * {@code {"type":...,"start":...,"end":...,"value":...}} record per
+ * token;</li>
+ * <li>{@code binary}: per file, the byte {@code 0xFF} and the length-prefixed
+ * UTF-8 file name; then per token, its type ordinal as one byte, the start
+ * offset and the length as unsigned LEB128 varints and, for tokens with a
+ * value, the varint length of the UTF-8 value followed by its bytes. Each
+ * file ends with its EOF token.</li>
+ * </ul>
+ */
+final class TokenWriter implements AutoCloseable {
+
+    enum Format {
+        TEXT, JSONL, BINARY
+    }
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final int FILE_MARKER = 0xFF;
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final byte[][] NAMES = new byte[TYPES.length][];
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    static {
+        for (TokenType type : TYPES) {
+            NAMES[type.ordinal()] = type.name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final OutputStream stream;
+    private final WritableByteChannel out;
+    private final Format format;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    TokenWriter(OutputStream stream, Format format) {
+        this.stream = stream;
+        this.out = Channels.newChannel(stream);
+        this.format = format;
+    }
+
+    /**
+     * Starts the tokens of a file.
+     *
+     * @param header Whether text output shows a {@code ==> file <==} header
+     *               (machine formats always record the file)
+     */
+    void file(String name, boolean header) {
+        switch (format) {
+            case TEXT -> {
+                if (header) {
+                    line("==> " + name + " <==");
+                }
+            }
+            case JSONL -> {
+                ascii("{\"file\":");
+                jsonString(name);
+                ascii("}\n");
+            }
+            case BINARY -> {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                room(1 + 5 + bytes.length);
+                buffer.put((byte) FILE_MARKER);
+                varint(bytes.length);
+                bytes(bytes);
+            }
+        }
+    }
+
+    /**
+     * Writes every token of a buffer.
+     */
+    void tokens(TokenBuffer tokens) {
+        for (int i = 0; i < tokens.size(); i++) {
+            token(tokens.type(i), tokens.start(i), tokens.end(i), tokens.text(i));
+        }
+    }
+
+    /**
+     * Writes one token.
+     *
+     * @param text The token value, or null for tokens without one
+     */
+    void token(TokenType type, int start, int end, CharSequence text) {
+        switch (format) {
+            case TEXT -> {
+                bytes(NAMES[type.ordinal()]);
+                if (text != null) {
+                    put('(');
+                    chars(text);
+                    put(')');
+                }
+                put('\n');
+            }
+            case JSONL -> {
+                ascii("{\"type\":\"");
+                bytes(NAMES[type.ordinal()]);
+                ascii("\",\"start\":");
+                decimal(start);
+                ascii(",\"end\":");
+                decimal(end);
+                if (text != null) {
+                    ascii(",\"value\":");
+                    jsonString(text);
+                }
+                ascii("}\n");
+            }
+            case BINARY -> {
+                room(1 + 5 + 5);
+                buffer.put((byte) type.ordinal());
+                varint(start);
+                varint(end - start);
+                if (text != null) {
+                    if (isAscii(text)) {
+                        room(5);
+                        varint(text.length());
+                        chars(text);
+                    } else {
+                        byte[] value = utf8(text);
+                        room(5);
+                        varint(value.length);
+                        bytes(value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a line of text, whatever the format (e.g. summaries).
+     */
+    void line(String text) {
+        chars(text);
+        put('\n');
+    }
+
+    /**
+     * Writes out everything buffered so far.
+     */
+    void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            stream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+    private void room(int bytes) {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void put(char ascii) {
+        room(1);
+        buffer.put((byte) ascii);
+    }
+
+    private void ascii(String text) {
+        room(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+    }
+
+    private void bytes(byte[] bytes) {
+        if (bytes.length > buffer.capacity()) {
+            flush();
+            try {
+                ByteBuffer whole = ByteBuffer.wrap(bytes);
+                while (whole.hasRemaining()) {
+                    out.write(whole);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return;
+        }
+
+        room(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Writes text as UTF-8, copying ASCII directly.
+     */
+    private void chars(CharSequence text) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                bytes(utf8(text.subSequence(i, length)));
+                return;
+            }
+            room(1);
+            buffer.put((byte) c);
+        }
+    }
+
+    private void jsonString(CharSequence text) {
+        put('"');
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                room(2);
+                buffer.put((byte) '\\').put((byte) c);
+            } else if (c < 0x20) {
+                room(6);
+                buffer.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+                        .put(HEX[c >> 4]).put(HEX[c & 0xF]);
+            } else if (c < 0x80) {
+                room(1);
+                buffer.put((byte) c);
+            } else {
+                // a run of non-ASCII chars needs no escaping
+                int end = i + 1;
+                while (end < length && text.charAt(end) >= 0x80) {
+                    end++;
+                }
+                bytes(utf8(text.subSequence(i, end)));
+                i = end - 1;
+            }
+        }
+        put('"');
+    }
+
+    private void decimal(int value) {
+        room(11);
+        if (value < 10) {
+            buffer.put((byte) ('0' + value));
+            return;
+        }
+
+        int digits = 0;
+        for (int v = value; v > 0; v /= 10) {
+            digits++;
+        }
+        int end = buffer.position() + digits;
+        for (int i = end - 1, v = value; i >= buffer.position(); i--, v /= 10) {
+            buffer.put(i, (byte) ('0' + v % 10));
+        }
+        buffer.position(end);
+    }
+
+    private void varint(int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static boolean isAscii(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] utf8(CharSequence text) {
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
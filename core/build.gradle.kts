@@ -14,3 +14,39 @@ tasks.test {
     useJUnitPlatform()
 }
 
+
+// the lexer's SIMD scanner (VectorSourceScanner) is built on the incubating Vector API: it lives in
+// a source set of its own, so only its compilation needs the module (and prints javac's incubator
+// warning). main loads it by name and never refers to it; it ships in the same jar.
+val vector by sourceSets.creating {
+    compileClasspath += sourceSets.main.get().output
+}
+
+tasks.named<JavaCompile>("compileVectorJava") {
+    options.compilerArgs.addAll(listOf("--add-modules", "jdk.incubator.vector"))
+}
+
+tasks.jar {
+    from(vector.output)
+}
+
+sourceSets.test {
+    runtimeClasspath += vector.output
+}
+
+// the suite runs twice: test with the default scalar scanner, simdTest with the opt-in SIMD one,
+// so LexerPerformanceTest holds both to the same budget
+val simdTest by tasks.registering(Test::class) {
+    description = "Runs the tests with the SIMD scanner (klang.lexer.simd=true)."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform()
+    jvmArgs("--add-modules", "jdk.incubator.vector")
+    systemProperty("klang.lexer.simd", "true")
+    shouldRunAfter(tasks.test)
+}
+
+tasks.check {
+    dependsOn(simdTest)
+}
@@ -5,6 +5,9 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
+import org.klang.core.jfr.DiagnosticEvent;
+import org.klang.core.jfr.Events;
+
 /**
  * Represents a diagnosis (message + spans + notes).
  * Designed to be built fluidly.
@@ -23,6 +26,24 @@ public final class Diagnostic {
         this.primarySpan = primarySpan;
         this.secondarySpans = secondarySpans == null ? List.of() : List.copyOf(secondarySpans);
         this.notes = notes == null ? List.of() : List.copyOf(notes);
+
+        if (Events.recording()) {
+            record(type, message, primarySpan);
+        }
+    }
+
+    private static void record(DiagnosticType type, String message, Span primarySpan) {
+        DiagnosticEvent event = new DiagnosticEvent();
+        if (event.shouldCommit()) {
+            event.type = type.name();
+            event.message = message;
+            if (primarySpan != null) {
+                event.file = primarySpan.fileName;
+                event.line = primarySpan.startLine;
+                event.column = primarySpan.startColumn;
+            }
+            event.commit();
+        }
     }
 
     // Builder helpers
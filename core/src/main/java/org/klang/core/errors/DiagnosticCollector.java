@@ -1,34 +1,167 @@
 package org.klang.core.errors;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
+/**
+ * Collects the diagnostics reported while compiling.
+ * <p>
+ * A collector made with the constructor belongs to one thread and keeps the
+ * diagnostics in report order. One made with {@link #concurrent()} can be
+ * shared by worker threads: each thread appends to a buffer of its own,
+ * without locking, and the buffers are merged when the diagnostics are read,
+ * ordered by file, line and column so the result does not depend on how the
+ * threads were scheduled.
+ * <p>
+ * Both count the diagnostics of each type as they are reported, so
+ * {@link #hasErrors()} and {@link #count} take constant time.
+ */
 public final class DiagnosticCollector {
-    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    /** Diagnostics without a file first, then by file name, line and column. */
+    private static final Comparator<Diagnostic> BY_POSITION = Comparator
+            .comparing((Diagnostic d) -> d.primarySpan == null ? null : d.primarySpan.fileName,
+                    Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingInt(d -> d.primarySpan == null ? 0 : d.primarySpan.startLine)
+            .thenComparingInt(d -> d.primarySpan == null ? 0 : d.primarySpan.startColumn);
+
+    /** Also orders diagnostics at the same position, which threads may report in any order. */
+    private static final Comparator<Diagnostic> MERGE_ORDER = BY_POSITION
+            .thenComparing((Diagnostic d) -> d.type)
+            .thenComparing(d -> d.message);
+
+    private static final DiagnosticType[] ERROR_TYPES = {
+            DiagnosticType.LEXICAL,
+            DiagnosticType.SYNTAX,
+            DiagnosticType.SEMANTIC,
+            DiagnosticType.TYPE,
+            DiagnosticType.ERROR,
+    };
+
+    private final List<Diagnostic> diagnostics; // null if concurrent
+    private final Queue<Buffer> buffers; // every thread's buffer, null unless concurrent
+    private final ThreadLocal<Buffer> buffer; // null unless concurrent
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(DiagnosticType.values().length);
+
+    public DiagnosticCollector() {
+        this.diagnostics = new ArrayList<>();
+        this.buffers = null;
+        this.buffer = null;
+    }
+
+    private DiagnosticCollector(Queue<Buffer> buffers) {
+        this.diagnostics = null;
+        this.buffers = buffers;
+        this.buffer = ThreadLocal.withInitial(() -> {
+            Buffer own = new Buffer();
+            buffers.add(own);
+            return own;
+        });
+    }
+
+    /**
+     * @return A collector any number of threads can report to at once
+     */
+    public static DiagnosticCollector concurrent() {
+        return new DiagnosticCollector(new ConcurrentLinkedQueue<>());
+    }
 
     public void report(Diagnostic d) {
-        diagnostics.add(d);
+        if (buffer != null) {
+            buffer.get().add(d);
+        } else {
+            diagnostics.add(d);
+        }
+        counts.incrementAndGet(d.type.ordinal());
     }
 
     public boolean hasErrors() {
-        return diagnostics.stream().anyMatch(d -> d.type == DiagnosticType.LEXICAL
-                || d.type == DiagnosticType.SYNTAX
-                || d.type == DiagnosticType.SEMANTIC
-                || d.type == DiagnosticType.TYPE
-                || d.type == DiagnosticType.ERROR);
+        for (DiagnosticType type : ERROR_TYPES) {
+            if (counts.get(type.ordinal()) > 0) {
+                return true;
+            }
+        }
+        return false;
     }
 
+    /**
+     * @return How many diagnostics of the given type were reported
+     */
+    public int count(DiagnosticType type) {
+        return counts.get(type.ordinal());
+    }
+
+    /**
+     * Returns the diagnostics in report order or, for a concurrent collector,
+     * a snapshot in position order (see {@link #sorted()}).
+     */
     public List<Diagnostic> all() {
+        if (buffers != null) {
+            return Collections.unmodifiableList(merge());
+        }
         return Collections.unmodifiableList(diagnostics);
     }
 
+    /**
+     * Returns the diagnostics grouped by file and ordered by position;
+     * diagnostics at the same position stay in the order they were reported
+     * (for a concurrent collector, they are ordered by type and message).
+     */
+    public List<Diagnostic> sorted() {
+        if (buffers != null) {
+            return merge();
+        }
+        List<Diagnostic> sorted = new ArrayList<>(diagnostics);
+        sorted.sort(BY_POSITION);
+        return sorted;
+    }
+
     /**
      * Throws DiagnosticException on the first error. The CLI can print all.
      */
     public void throwIfErrors() {
         if (hasErrors()) {
-            throw new DiagnosticException(diagnostics.get(0));
+            throw new DiagnosticException(all().get(0));
+        }
+    }
+
+    private List<Diagnostic> merge() {
+        List<Diagnostic> merged = new ArrayList<>();
+        for (Buffer b : buffers) {
+            b.copyTo(merged);
+        }
+        merged.sort(MERGE_ORDER);
+        return merged;
+    }
+
+    /**
+     * The diagnostics reported by one thread. Only that thread appends;
+     * readers see every diagnostic up to the size it has published.
+     */
+    private static final class Buffer {
+        private volatile Diagnostic[] items = new Diagnostic[16];
+        private volatile int size;
+
+        void add(Diagnostic d) {
+            Diagnostic[] array = items;
+            int n = size;
+            if (n == array.length) {
+                array = Arrays.copyOf(array, n * 2);
+                items = array;
+            }
+            array[n] = d;
+            size = n + 1; // publishes the slot
+        }
+
+        void copyTo(List<Diagnostic> out) {
+            int n = size;
+            Diagnostic[] array = items; // read after size: holds at least n diagnostics
+            out.addAll(Arrays.asList(array).subList(0, n));
         }
     }
 }
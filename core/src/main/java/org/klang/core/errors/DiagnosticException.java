@@ -1,15 +1,22 @@
 package org.klang.core.errors;
 
+/**
+ * Carries a {@link Diagnostic} up to whoever renders it. Diagnostics are
+ * printed, never their stack trace, so none is captured: throwing one costs
+ * about as much as allocating it.
+ */
 public final class DiagnosticException extends RuntimeException {
-    public final Diagnostic diagnostic;
+    private static final long serialVersionUID = 1L;
+
+    public final transient Diagnostic diagnostic; // Diagnostic is not serializable
 
     public DiagnosticException(Diagnostic diagnostic) {
-        super(diagnostic.message);
+        super(diagnostic.message, null, false, false);
         this.diagnostic = diagnostic;
     }
 
     public DiagnosticException(Diagnostic diagnostic, Throwable cause) {
-        super(diagnostic.message, cause);
+        super(diagnostic.message, cause, false, false);
         this.diagnostic = diagnostic;
     }
 }
@@ -1,9 +1,10 @@
 package org.klang.core.errors;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.PrintStream;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Formats and prints diagnostics with rustic aesthetics.
@@ -11,6 +12,11 @@ import java.util.List;
  * the
  * file.
  * - useColors: force colors.
+ * Source lines come from a {@link SourceCache}, so each file is read at most
+ * once however many diagnostics point into it.
+ * <p>
+ * {@link #printAll} renders a whole collector into one buffer and writes it
+ * at once, instead of one synchronized stderr write per line.
  */
 public final class DiagnosticPrinter {
 
@@ -25,10 +31,19 @@ public final class DiagnosticPrinter {
 
     private final boolean useColors;
     private final boolean showLocations;
+    private final SourceCache sources;
 
     public DiagnosticPrinter(boolean useColors, boolean showLocations) {
+        this(useColors, showLocations, SourceCache.shared());
+    }
+
+    /**
+     * @param sources Cache the source context is read from
+     */
+    public DiagnosticPrinter(boolean useColors, boolean showLocations, SourceCache sources) {
         this.useColors = useColors;
         this.showLocations = showLocations;
+        this.sources = sources;
     }
 
     public DiagnosticPrinter() {
@@ -46,8 +61,48 @@ public final class DiagnosticPrinter {
         System.err.println(out);
     }
 
+    /**
+     * Prints every diagnostic of the collector, grouped by file and ordered by
+     * position, in a single write to stderr. Each diagnostic reads as
+     * {@link #print} would print it.
+     */
+    public void printAll(DiagnosticCollector diagnostics) {
+        printAll(diagnostics, System.err);
+    }
+
+    /**
+     * Like {@link #printAll(DiagnosticCollector)}, writing to the given stream.
+     */
+    public void printAll(DiagnosticCollector diagnostics, PrintStream stream) {
+        List<Diagnostic> sorted = diagnostics.sorted();
+        if (sorted.isEmpty()) {
+            return;
+        }
+
+        String newline = System.lineSeparator(); // what print's println ends with
+        Map<String, SourceFile> files = new HashMap<>();
+        StringBuilder sb = new StringBuilder(sorted.size() * 160);
+        for (Diagnostic d : sorted) {
+            render(sb, d, files);
+            sb.append(newline);
+        }
+
+        byte[] bytes = sb.toString().getBytes(stream.charset());
+        stream.write(bytes, 0, bytes.length);
+        stream.flush();
+    }
+
     public String render(Diagnostic d) {
         StringBuilder sb = new StringBuilder();
+        render(sb, d, new HashMap<>(4));
+        return sb.toString();
+    }
+
+    /**
+     * @param files Sources already looked up for this batch (null when the
+     *              file could not be read)
+     */
+    private void render(StringBuilder sb, Diagnostic d, Map<String, SourceFile> files) {
         // header
         String label = labelFor(d.type);
         String labelColor = colorFor(d.type);
@@ -60,27 +115,23 @@ public final class DiagnosticPrinter {
 
         // location line (optional)
         if (showLocations && d.primarySpan != null && d.primarySpan.fileName != null) {
-            sb.append("  --> ").append(d.primarySpan.toString()).append("\n");
+            d.primarySpan.appendTo(sb.append("  --> ")).append("\n");
         } else if (showLocations && d.primarySpan != null && d.primarySpan.fileName == null) {
             // still show basic location (line/col) but without file path
-            sb.append("  --> ").append(d.primarySpan.toString()).append("\n");
+            d.primarySpan.appendTo(sb.append("  --> ")).append("\n");
         }
 
         // source context (only if fileName present and showLocations true)
         if (showLocations && d.primarySpan != null && d.primarySpan.fileName != null) {
-            try {
-                appendSourceContext(sb, d.primarySpan);
-            } catch (IOException e) {
-                // ignore
-            }
+            appendSourceContext(sb, d.primarySpan, files);
         }
 
         // secondary spans as notes (brief)
         for (Span s : d.secondarySpans()) {
             if (showLocations && s.fileName != null) {
-                sb.append(" note: referenced at ").append(s.toString()).append("\n");
+                s.appendTo(sb.append(" note: referenced at ")).append("\n");
             } else {
-                sb.append(" note: referenced at ").append(s.toString()).append("\n");
+                s.appendTo(sb.append(" note: referenced at ")).append("\n");
             }
         }
 
@@ -88,32 +139,55 @@ public final class DiagnosticPrinter {
         for (Note n : d.notes()) {
             sb.append("  > note: ").append(n.message).append("\n");
             if (showLocations && n.hasSpan() && n.span.fileName != null) {
-                try {
-                    sb.append("    --> ").append(n.span.toString()).append("\n");
-                    appendSourceContext(sb, n.span);
-                } catch (IOException ex) {
-                    // ignore
-                }
+                n.span.appendTo(sb.append("    --> ")).append("\n");
+                appendSourceContext(sb, n.span, files);
             } else if (showLocations && n.hasSpan()) {
-                sb.append("    --> ").append(n.span.toString()).append("\n");
+                n.span.appendTo(sb.append("    --> ")).append("\n");
             }
         }
-
-        return sb.toString();
     }
 
-    private void appendSourceContext(StringBuilder sb, Span span) throws IOException {
-        List<String> lines = Files.readAllLines(Path.of(span.fileName));
-        int idx = span.startLine - 1;
-        String lineText = (idx >= 0 && idx < lines.size()) ? lines.get(idx) : "";
+    private void appendSourceContext(StringBuilder sb, Span span, Map<String, SourceFile> files) {
+        SourceFile source = source(span.fileName, files);
+        if (source == null) {
+            return; // unreadable: no context
+        }
 
-        String lineNum = String.valueOf(span.startLine);
-        sb.append(" ").append(lineNum).append(" | ").append(lineText).append("\n");
+        int lineStart = sb.length();
+        sb.append(" ").append(span.startLine);
+        int lineNumLength = sb.length() - lineStart - 1;
+        sb.append(" | ").append(source.lineText(span.startLine)).append("\n");
 
         // pointer
         int pointerPos = Math.max(0, span.startColumn - 1);
-        int offset = lineNum.length() + 3 + pointerPos;
-        sb.append(" ".repeat(Math.max(0, offset))).append("^".repeat(Math.max(1, span.length()))).append("\n");
+        int offset = lineNumLength + 3 + pointerPos;
+        repeat(sb, ' ', offset);
+        repeat(sb, '^', Math.max(1, span.length()));
+        sb.append("\n");
+    }
+
+    /**
+     * Looks a file up once per batch, remembering failures too.
+     */
+    private SourceFile source(String fileName, Map<String, SourceFile> files) {
+        if (files.containsKey(fileName)) {
+            return files.get(fileName);
+        }
+
+        SourceFile file;
+        try {
+            file = sources.get(fileName);
+        } catch (IOException e) {
+            file = null;
+        }
+        files.put(fileName, file);
+        return file;
+    }
+
+    private static void repeat(StringBuilder sb, char c, int count) {
+        for (int i = 0; i < count; i++) {
+            sb.append(c);
+        }
     }
 
     private String labelFor(DiagnosticType t) {
@@ -1,9 +1,6 @@
 package org.klang.core.errors;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.List;
 
 public final class ErrorReporter {
 
@@ -62,12 +59,7 @@ public final class ErrorReporter {
     }
 
     private static void printSourceContext(Span span) throws IOException {
-        List<String> lines = Files.readAllLines(Path.of(span.fileName));
-        int lineIndex = span.startLine - 1;
-
-        String code = (lineIndex >= 0 && lineIndex < lines.size())
-                ? lines.get(lineIndex)
-                : "";
+        String code = SourceCache.shared().get(span.fileName).lineText(span.startLine);
 
         String num = String.valueOf(span.startLine);
         String prefix = GRAY_DARK + "  " + num + " | " + RESET;
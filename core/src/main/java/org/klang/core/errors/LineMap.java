@@ -0,0 +1,145 @@
+package org.klang.core.errors;
+
+import java.util.Arrays;
+
+/**
+ * Maps source offsets to 1-based lines and columns.
+ * <p>
+ * The offsets where each line starts are recorded in a single pass over the
+ * source, the first time a position is resolved, and every lookup after that is
+ * a binary search. Tokens only need to carry offsets: lines and columns are
+ * computed when a diagnostic or a tool asks for them.
+ * <p>
+ * Instances are thread-safe and meant to be shared by everything that reports
+ * on the same source.
+ */
+public final class LineMap {
+    private final CharSequence source;
+    private final boolean utf8;
+    private volatile int[] lineStarts; // computed on first use
+
+    private LineMap(CharSequence source, boolean utf8) {
+        this.source = source;
+        this.utf8 = utf8;
+    }
+
+    /**
+     * Creates a map over decoded text, where columns count chars.
+     */
+    public static LineMap of(CharSequence source) {
+        return new LineMap(source, false);
+    }
+
+    /**
+     * Creates a map over UTF-8 bytes exposed as a {@code CharSequence} (one char
+     * per byte), where columns count characters rather than bytes.
+     */
+    public static LineMap ofUtf8(CharSequence bytes) {
+        return new LineMap(bytes, true);
+    }
+
+    /**
+     * @return Number of lines of the source (at least 1)
+     */
+    public int lineCount() {
+        return starts().length;
+    }
+
+    /**
+     * @param offset Offset in {@code [0, length]}
+     * @return 1-based line containing the offset
+     */
+    public int line(int offset) {
+        checkOffset(offset);
+
+        int[] starts = starts();
+        int index = Arrays.binarySearch(starts, offset);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * @param offset Offset in {@code [0, length]}
+     * @return 1-based column of the offset within its line
+     */
+    public int column(int offset) {
+        int lineStart = lineStart(line(offset));
+        if (!utf8) {
+            return offset - lineStart + 1;
+        }
+
+        // count characters: every byte that is not a continuation byte
+        int column = 1;
+        for (int i = lineStart; i < offset; i++) {
+            if ((source.charAt(i) & 0xC0) != 0x80) {
+                column++;
+            }
+        }
+        return column;
+    }
+
+    /**
+     * @param line 1-based line number
+     * @return Offset of the first character of the line
+     */
+    public int lineStart(int line) {
+        int[] starts = starts();
+        if (line < 1 || line > starts.length) {
+            throw new IllegalArgumentException("Line out of range: " + line);
+        }
+        return starts[line - 1];
+    }
+
+    /**
+     * Builds the span covering {@code [start, end)}. An empty range yields a
+     * one-column span at {@code start}.
+     *
+     * @param fileName File name for the span (can be null)
+     */
+    public Span span(String fileName, int start, int end) {
+        if (end < start) {
+            throw new IllegalArgumentException("end < start");
+        }
+
+        int startLine = line(start);
+        int startColumn = column(start);
+        if (end == start) {
+            return new Span(fileName, startLine, startColumn, startLine, startColumn + 1);
+        }
+
+        // the span is inclusive: it ends on the last character of the range
+        int last = end - 1;
+        return new Span(fileName, startLine, startColumn, line(last), column(last));
+    }
+
+    private void checkOffset(int offset) {
+        if (offset < 0 || offset > source.length()) {
+            throw new IndexOutOfBoundsException("Offset out of range: " + offset);
+        }
+    }
+
+    private int[] starts() {
+        int[] starts = lineStarts;
+        if (starts == null) {
+            starts = computeLineStarts();
+            lineStarts = starts;
+        }
+        return starts;
+    }
+
+    private int[] computeLineStarts() {
+        int length = source.length();
+        int[] starts = new int[Math.max(16, length / 32)];
+        int count = 1; // line 1 starts at 0
+
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(i) == '\n') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+
+        return Arrays.copyOf(starts, count);
+    }
+}
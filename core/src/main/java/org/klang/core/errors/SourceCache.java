@@ -0,0 +1,166 @@
+package org.klang.core.errors;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.klang.core.jfr.Events;
+import org.klang.core.jfr.SourceCacheEvent;
+
+/**
+ * Bounded, least-recently-used cache of {@link SourceFile}s, keyed by the file
+ * name used in {@link Span#fileName}.
+ * <p>
+ * The lexer registers a named source when it reports a diagnostic in it, so
+ * the renderers print source context from the text that was lexed, without
+ * touching the disk. Files the cache has not seen are read once and kept; a
+ * file is read again only if it changed on disk (registered ones included) or
+ * was evicted. Rendering a batch of diagnostics therefore costs at most one
+ * read per file.
+ * <p>
+ * The total size of the cached contents is bounded: the least recently used
+ * files are evicted first.
+ */
+public final class SourceCache {
+    /** Default bound on the cached contents, in characters (or bytes). */
+    public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+    private static final SourceCache SHARED = new SourceCache(DEFAULT_MAX_SIZE);
+
+    private final long maxSize;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size; // guarded by this
+
+    /**
+     * @param maxSize Bound on the total size of the cached contents
+     */
+    public SourceCache(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must be >= 0");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return The cache shared by the lexer and the diagnostic renderers
+     */
+    public static SourceCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the source of the given file, reading it only if it is not cached
+     * or has changed on disk since it was read.
+     *
+     * @param fileName File name, as used in {@link Span#fileName}
+     * @throws IOException if the file has to be read and cannot be
+     */
+    public SourceFile get(String fileName) throws IOException {
+        SourceCacheEvent event = Events.recording() ? new SourceCacheEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(fileName);
+        }
+
+        Path path = Path.of(fileName);
+        if (entry != null && entry.modified == lastModified(path)) {
+            commit(event, fileName, true);
+            return entry.file;
+        }
+
+        // read outside the lock; a concurrent reader of the same file just races
+        long modified = lastModified(path);
+        String text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        SourceFile file = SourceFile.of(fileName, text);
+
+        synchronized (this) {
+            put(new Entry(file, modified));
+        }
+        commit(event, fileName, false);
+        return file;
+    }
+
+    /**
+     * Registers a source that is being lexed, replacing what was cached under
+     * its name. Registering the same contents again keeps the cached file, so
+     * every lexer over one source shares a single {@link LineMap}.
+     * <p>
+     * The entry stays valid until the file of that name changes on disk (a
+     * name that is not a file never changes).
+     *
+     * @return The cached source file for these contents
+     */
+    public SourceFile register(SourceFile file) {
+        long modified = lastModified(Path.of(file.name()));
+        synchronized (this) {
+            Entry entry = entries.get(file.name());
+            if (entry != null && entry.file.content() == file.content()) {
+                return entry.file;
+            }
+
+            put(new Entry(file, modified));
+            return file;
+        }
+    }
+
+    /**
+     * Drops the cached source of the given file.
+     */
+    public synchronized void invalidate(String fileName) {
+        Entry removed = entries.remove(fileName);
+        if (removed != null) {
+            size -= removed.file.weight();
+        }
+    }
+
+    /**
+     * Drops every cached source.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    private void put(Entry entry) {
+        Entry previous = entries.put(entry.file.name(), entry);
+        if (previous != null) {
+            size -= previous.file.weight();
+        }
+        size += entry.file.weight();
+
+        // evict least recently used files, keeping at least the newest one
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (size > maxSize && entries.size() > 1) {
+            Entry evicted = eldest.next().getValue();
+            eldest.remove();
+            size -= evicted.file.weight();
+        }
+    }
+
+    private static void commit(SourceCacheEvent event, String fileName, boolean hit) {
+        if (event != null && event.shouldCommit()) {
+            event.file = fileName;
+            event.hit = hit;
+            event.commit();
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return Long.MIN_VALUE; // forces a read, which reports the error
+        }
+    }
+
+    private record Entry(SourceFile file, long modified) {
+    }
+}
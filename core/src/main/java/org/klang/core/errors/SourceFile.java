@@ -0,0 +1,105 @@
+package org.klang.core.errors;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The contents of a source file together with its {@link LineMap}, as seen by
+ * the lexer and by the diagnostic renderers.
+ */
+public final class SourceFile {
+    private final String name;
+    private final CharSequence content;
+    private final LineMap lines;
+    private volatile int[] textLineStarts; // lines as lineText splits them, computed on first use
+
+    /**
+     * @param name    File name, as used in {@link Span#fileName}
+     * @param content Source text (decoded text, or UTF-8 bytes paired with a
+     *                {@link LineMap#ofUtf8} map)
+     * @param lines   Line map over {@code content}
+     */
+    public SourceFile(String name, CharSequence content, LineMap lines) {
+        this.name = Objects.requireNonNull(name, "name cannot be null");
+        this.content = Objects.requireNonNull(content, "content cannot be null");
+        this.lines = Objects.requireNonNull(lines, "lines cannot be null");
+    }
+
+    /**
+     * Creates a source file over decoded text.
+     */
+    public static SourceFile of(String name, CharSequence content) {
+        return new SourceFile(name, content, LineMap.of(content));
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public CharSequence content() {
+        return content;
+    }
+
+    public LineMap lines() {
+        return lines;
+    }
+
+    /**
+     * Returns the text of a line, without its line terminator. Lines end at
+     * {@code \n}, {@code \r} or {@code \r\n}, as {@link java.io.BufferedReader}
+     * splits them.
+     *
+     * @param line 1-based line number
+     * @return The line text, or an empty string if the line does not exist
+     */
+    public String lineText(int line) {
+        int[] starts = textLineStarts();
+        if (line < 1 || line > starts.length) {
+            return "";
+        }
+
+        int start = starts[line - 1];
+        int end = line < starts.length ? starts[line] : content.length();
+        if (end > start && content.charAt(end - 1) == '\n') {
+            end--;
+        }
+        if (end > start && content.charAt(end - 1) == '\r') {
+            end--;
+        }
+
+        return content.subSequence(start, end).toString();
+    }
+
+    private int[] textLineStarts() {
+        int[] starts = textLineStarts;
+        if (starts == null) {
+            int length = content.length();
+            starts = new int[16];
+            int count = 1; // line 1 starts at 0
+            for (int i = 0; i < length; i++) {
+                char c = content.charAt(i);
+                if (c == '\r' && i + 1 < length && content.charAt(i + 1) == '\n') {
+                    i++;
+                } else if (c != '\n' && c != '\r') {
+                    continue;
+                }
+                if (i + 1 < length) { // no empty line after a final terminator
+                    if (count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                    }
+                    starts[count++] = i + 1;
+                }
+            }
+            starts = Arrays.copyOf(starts, count);
+            textLineStarts = starts;
+        }
+        return starts;
+    }
+
+    /**
+     * @return Size of the contents, used to bound the {@link SourceCache}
+     */
+    int weight() {
+        return content.length();
+    }
+}
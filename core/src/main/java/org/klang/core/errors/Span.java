@@ -37,15 +37,25 @@ public final class Span {
      */
     @Override
     public String toString() {
+        return appendTo(new StringBuilder(fileName == null ? 24 : fileName.length() + 16)).toString();
+    }
+
+    /**
+     * Appends the same text as {@link #toString()}, without formatting
+     * through {@link String#format}.
+     */
+    StringBuilder appendTo(StringBuilder sb) {
         if (fileName == null) {
             if (isSingleLine()) {
-                return String.format("line %d, col %d", startLine, startColumn);
+                return sb.append("line ").append(startLine).append(", col ").append(startColumn);
             }
-            return String.format("line %d:%d-%d:%d", startLine, startColumn, endLine, endColumn);
+            return sb.append("line ").append(startLine).append(':').append(startColumn)
+                    .append('-').append(endLine).append(':').append(endColumn);
         }
-        if (isSingleLine()) {
-            return String.format("%s:%d:%d", fileName, startLine, startColumn);
+        sb.append(fileName).append(':').append(startLine).append(':').append(startColumn);
+        if (!isSingleLine()) {
+            sb.append('-').append(endLine).append(':').append(endColumn);
         }
-        return String.format("%s:%d:%d-%d:%d", fileName, startLine, startColumn, endLine, endColumn);
+        return sb;
     }
 }
\ No newline at end of file
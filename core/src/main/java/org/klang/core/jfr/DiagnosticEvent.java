@@ -0,0 +1,33 @@
+package org.klang.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A diagnostic was created, whether it is later collected, thrown or
+ * dropped. The stack trace shows who reported it.
+ */
+@Name("org.klang.Diagnostic")
+@Label("Diagnostic")
+@Category({ "Klang", "Front End" })
+@Description("Diagnostic created by the front end")
+public final class DiagnosticEvent extends Event {
+
+    @Label("Type")
+    public String type;
+
+    @Label("Message")
+    public String message;
+
+    @Label("File")
+    public String file;
+
+    @Label("Line")
+    public int line;
+
+    @Label("Column")
+    public int column;
+}
@@ -0,0 +1,27 @@
+package org.klang.core.jfr;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Guards the creation of the front end's events.
+ * <p>
+ * Loading an event class pulls in much of JFR, which costs a short run like
+ * {@code kc lex} more time than the lexing itself. Callers create an event
+ * only when {@link #recording()} holds, so without JFR the event classes are
+ * never loaded.
+ */
+public final class Events {
+
+    private Events() {
+    }
+
+    /**
+     * Whether Flight Recorder has been started in this JVM, on the command
+     * line or later by {@code jcmd}. A single volatile read.
+     *
+     * @return True if events may be recorded
+     */
+    public static boolean recording() {
+        return FlightRecorder.isInitialized();
+    }
+}
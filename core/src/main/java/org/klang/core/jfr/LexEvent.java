@@ -0,0 +1,53 @@
+package org.klang.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Lexing of one whole source, from the first token to EOF.
+ * <p>
+ * Begun when lexing starts and committed with {@link #finish} once EOF is
+ * reached; a source that fails on its first error (outside recovery mode)
+ * records nothing. For a {@code TokenCursor} the duration also covers the
+ * time the consumer spends between tokens.
+ */
+@Name("org.klang.Lex")
+@Label("Lex")
+@Category({ "Klang", "Front End" })
+@Description("Lexing of one source file")
+@StackTrace(false)
+public final class LexEvent extends Event {
+
+    @Label("File")
+    public String file;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Tokens")
+    public int tokens;
+
+    @Label("Recoveries")
+    @Description("Lexical errors skipped in recovery mode")
+    public int recoveries;
+
+    /**
+     * Ends the event and commits it with the outcome of the lexing, if it is
+     * being recorded.
+     */
+    public void finish(String file, long bytes, int tokens, int recoveries) {
+        if (shouldCommit()) {
+            this.file = file;
+            this.bytes = bytes;
+            this.tokens = tokens;
+            this.recoveries = recoveries;
+            commit();
+        }
+    }
+}
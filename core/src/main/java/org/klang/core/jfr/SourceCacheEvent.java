@@ -0,0 +1,27 @@
+package org.klang.core.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Lookup of a file in the source cache. On a miss the duration includes
+ * reading the file.
+ */
+@Name("org.klang.SourceCacheLookup")
+@Label("Source Cache Lookup")
+@Category({ "Klang", "Front End" })
+@Description("Lookup of a source file for diagnostic rendering")
+@StackTrace(false)
+public final class SourceCacheEvent extends Event {
+
+    @Label("File")
+    public String file;
+
+    @Label("Hit")
+    @Description("Whether the file was served from the cache")
+    public boolean hit;
+}
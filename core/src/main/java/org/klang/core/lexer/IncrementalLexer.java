@@ -0,0 +1,135 @@
+package org.klang.core.lexer;
+
+import java.util.Objects;
+
+import org.klang.core.errors.DiagnosticCollector;
+
+/**
+ * Re-lexes an edited buffer by reusing the tokens of a previous run.
+ * <p>
+ * Only the damaged region around the edit is lexed again. Tokens before it
+ * are copied as-is; once a freshly lexed token starts exactly where an old
+ * token (after the edit) now starts, the streams have resynchronized and the
+ * remaining old tokens are copied with their offsets shifted.
+ * <p>
+ * Resynchronizing on a token start is safe because lexing resumes in the
+ * same state at every token boundary: comments and literals never span a
+ * token start. Edits that open or close a {@code /* *}{@code /} comment or a
+ * string literal simply extend the damaged region until the streams agree
+ * again.
+ * <p>
+ * The damaged region is lexed in recovery mode: a buffer is often invalid
+ * while it is being typed (an unterminated string, a stray character), so a
+ * malformed lexeme becomes an ERROR token instead of failing the edit.
+ */
+public final class IncrementalLexer {
+
+    private IncrementalLexer() {
+    }
+
+    /**
+     * Applies an edit to the source of {@code previous} and re-lexes it.
+     *
+     * @param previous      Tokens of the source before the edit
+     * @param filePath      The path of the source file (for error reporting)
+     * @param offset        Offset of the edit in the previous source
+     * @param removedLength Number of characters removed at {@code offset}
+     * @param inserted      Text inserted at {@code offset}
+     * @return Tokens of the edited source; its {@link TokenBuffer#source()} is
+     *         the new text
+     */
+    public static TokenBuffer relex(TokenBuffer previous, String filePath,
+            int offset, int removedLength, CharSequence inserted) {
+        return relex(previous, filePath, offset, removedLength, inserted, null);
+    }
+
+    /**
+     * Applies an edit to the source of {@code previous} and re-lexes it,
+     * reporting the lexical errors of the re-lexed region.
+     *
+     * @param diagnostics Collector for the errors found while re-lexing, or
+     *                    null to keep only their ERROR tokens
+     * @see #relex(TokenBuffer, String, int, int, CharSequence)
+     */
+    public static TokenBuffer relex(TokenBuffer previous, String filePath,
+            int offset, int removedLength, CharSequence inserted, DiagnosticCollector diagnostics) {
+        CharSequence oldSource = previous.source();
+        Objects.checkFromIndexSize(offset, removedLength, oldSource.length());
+
+        String newSource = new StringBuilder(oldSource.length() - removedLength + inserted.length())
+                .append(oldSource, 0, offset)
+                .append(inserted)
+                .append(oldSource, offset + removedLength, oldSource.length())
+                .toString();
+
+        return relex(previous, newSource, filePath, offset, removedLength, inserted.length(), diagnostics);
+    }
+
+    /**
+     * Re-lexes a source that has already been edited.
+     *
+     * @param previous       Tokens of the source before the edit
+     * @param newSource      The source after the edit
+     * @param filePath       The path of the source file (for error reporting)
+     * @param offset         Offset of the edit in the previous source
+     * @param removedLength  Number of characters removed at {@code offset}
+     * @param insertedLength Number of characters inserted at {@code offset}
+     * @return Tokens of {@code newSource}
+     */
+    public static TokenBuffer relex(TokenBuffer previous, CharSequence newSource, String filePath,
+            int offset, int removedLength, int insertedLength) {
+        return relex(previous, newSource, filePath, offset, removedLength, insertedLength, null);
+    }
+
+    /**
+     * Re-lexes a source that has already been edited, reporting the lexical
+     * errors of the re-lexed region.
+     *
+     * @param diagnostics Collector for the errors found while re-lexing, or
+     *                    null to keep only their ERROR tokens
+     * @see #relex(TokenBuffer, CharSequence, String, int, int, int)
+     */
+    public static TokenBuffer relex(TokenBuffer previous, CharSequence newSource, String filePath,
+            int offset, int removedLength, int insertedLength, DiagnosticCollector diagnostics) {
+        int delta = insertedLength - removedLength;
+        if (previous.source().length() + delta != newSource.length()) {
+            throw new IllegalArgumentException("Edit does not match the new source length");
+        }
+
+        // Keep every token that ends strictly before the edit, except the last
+        // one: it may be extended by the edit or depend on the lookahead.
+        int damaged = previous.firstEndingAtOrAfter(offset);
+        int kept = Math.max(0, damaged - 1);
+        int restart = kept == 0 ? 0 : previous.end(kept - 1);
+
+        TokenBuffer result = new TokenBuffer(newSource, previous.size() + 16);
+        result.addRange(previous, 0, kept, 0);
+
+        Lexer lexer = new Lexer(newSource, filePath, diagnostics != null ? diagnostics : new DiagnosticCollector());
+        lexer.seek(restart);
+
+        int unchangedFrom = offset + insertedLength; // new offset where the untouched suffix begins
+        int candidate = previous.firstStartingAtOrAfter(offset + removedLength);
+        TokenType type;
+
+        do {
+            type = lexer.scanToken();
+            int start = lexer.tokenStart;
+
+            if (start >= unchangedFrom) {
+                while (candidate < previous.size() && previous.start(candidate) + delta < start) {
+                    candidate++;
+                }
+
+                if (candidate < previous.size() && previous.start(candidate) + delta == start) {
+                    result.addRange(previous, candidate, previous.size(), delta);
+                    return result;
+                }
+            }
+
+            lexer.emit(type, result);
+        } while (type != TokenType.EOF);
+
+        return result;
+    }
+}
@@ -0,0 +1,95 @@
+package org.klang.core.lexer;
+
+/**
+ * Keyword recognition over a source range, without allocating.
+ * <p>
+ * Keywords are placed in a 64-slot table by a perfect hash of their length,
+ * first and last character. A lookup hashes the candidate range, then compares
+ * it against the single keyword in that slot, so neither a {@code String} nor
+ * a {@code StringBuilder} is created to decide if an identifier is a keyword.
+ */
+final class Keywords {
+    private static final int MIN_LENGTH = 2;
+    private static final int MAX_LENGTH = 9;
+    private static final int MASK = 63;
+
+    private static final char[][] WORDS = new char[MASK + 1][];
+    private static final TokenType[] TYPES = new TokenType[MASK + 1];
+
+    static {
+        put("return", TokenType.RETURN);
+        put("if", TokenType.IF);
+        put("otherwise", TokenType.OTHERWISE);
+        put("afterall", TokenType.AFTERALL);
+        put("for", TokenType.FOR);
+        put("while", TokenType.WHILE);
+        put("break", TokenType.BREAK);
+        put("continue", TokenType.CONTINUE);
+        put("public", TokenType.PUBLIC);
+        put("private", TokenType.PRIVATE);
+        put("protected", TokenType.PROTECTED);
+        put("static", TokenType.STATIC);
+        put("true", TokenType.TRUE);
+        put("false", TokenType.FALSE);
+        put("integer", TokenType.INTEGER);
+        put("try", TokenType.TRY);
+        put("catch", TokenType.CATCH);
+        put("double", TokenType.DOUBLE);
+        put("boolean", TokenType.BOOLEAN);
+        put("character", TokenType.CHARACTER_TYPE);
+        put("void", TokenType.VOID);
+        put("null", TokenType.NULL);
+        put("fresh", TokenType.FRESH);
+
+        // References
+        put("String", TokenType.STRING_TYPE);
+    }
+
+    private Keywords() {
+    }
+
+    private static void put(String word, TokenType type) {
+        if (word.length() < MIN_LENGTH || word.length() > MAX_LENGTH) {
+            throw new IllegalStateException("Keyword length out of range: " + word);
+        }
+
+        int slot = hash(word.length(), word.charAt(0), word.charAt(word.length() - 1));
+        if (WORDS[slot] != null) {
+            throw new IllegalStateException(
+                    "Keyword hash collision: " + word + " / " + new String(WORDS[slot]));
+        }
+
+        WORDS[slot] = word.toCharArray();
+        TYPES[slot] = type;
+    }
+
+    private static int hash(int length, char first, char last) {
+        return ((first << 2) + last + length * 54) & MASK;
+    }
+
+    /**
+     * Classifies the identifier in {@code source[start, end)}.
+     *
+     * @return The keyword type, or IDENTIFIER if the range is not a keyword
+     */
+    static TokenType lookup(CharSequence source, int start, int end) {
+        int length = end - start;
+        if (length < MIN_LENGTH || length > MAX_LENGTH) {
+            return TokenType.IDENTIFIER;
+        }
+
+        int slot = hash(length, source.charAt(start), source.charAt(end - 1));
+        char[] word = WORDS[slot];
+        if (word == null || word.length != length) {
+            return TokenType.IDENTIFIER;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(start + i) != word[i]) {
+                return TokenType.IDENTIFIER;
+            }
+        }
+
+        return TYPES[slot];
+    }
+}
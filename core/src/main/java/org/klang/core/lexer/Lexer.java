@@ -1,22 +1,50 @@
 package org.klang.core.lexer;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
 
 import org.klang.core.errors.Diagnostic;
+import org.klang.core.errors.DiagnosticCollector;
 import org.klang.core.errors.DiagnosticException;
 import org.klang.core.errors.DiagnosticType;
+import org.klang.core.errors.LineMap;
 import org.klang.core.errors.Note;
+import org.klang.core.errors.SourceCache;
+import org.klang.core.errors.SourceFile;
 import org.klang.core.errors.Span;
+import org.klang.core.jfr.Events;
+import org.klang.core.jfr.LexEvent;
 
 public class Lexer {
+    // exact decimal fast path: mantissa and 10^n are both exact doubles
+    private static final long MAX_EXACT_MANTISSA = (1L << 53) - 1;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
     List<Token> tokens = new ArrayList<>();
-    int position = 0, line = 1, column = 0;
-    String source;
+    TokenBuffer buffer;
+    int position = 0;
+    int tokenStart = 0;
+    int limit; // end of the range being lexed, normally the source length
+    boolean unterminatedComment = false;
+    boolean exhausted = false;
+    CharSequence source;
+    Utf8Source utf8; // non-null when lexing raw UTF-8 bytes
+    SourceScanner scanner; // bulk skipping of whitespace, comments and string text
     String filePath;
-    HashMap<String, TokenType> tokensTypeByString = new HashMap<>();
-    HashMap<Character, TokenType> tokensTypeByChar = new HashMap<>();
+    LineMap lines; // resolves offsets to line/column, only for diagnostics
+    boolean registered; // whether the source was handed to the SourceCache
+    final DiagnosticCollector diagnostics; // null unless in recovery mode
+    SymbolTable symbols; // null unless identifiers are interned
+    long numberBits; // value of the last NUMBER (double bits if numberDecimal)
+    boolean numberDecimal;
+    boolean literalEscapes; // whether the last literal contains escapes
+    int recoveries = 0;
 
     /**
      * Tokenizes the source code into a list of tokens.
@@ -24,223 +52,341 @@ public class Lexer {
      * @return List of tokens extracted from the source code
      */
     public List<Token> tokenize() {
-        while (!isAtEnd()) {
-            char c = peek();
-
-            // whitespace
-            if (Character.isWhitespace(c)) {
-                advance();
-                if (c == '\n') {
-                    line++;
-                    column = 0;
-                }
-                continue;
-            }
-
-            // strings
-            if (c == '"') {
-                advance(); // consume opening quote
-                String content = readString(); // now readString doesn't know about the quote
-                tokens.add(new Token(TokenType.STRING_LITERAL, content));
-                continue;
-            }
+        tokens = tokenizeToBuffer().asList();
+        return tokens;
+    }
 
-            // char literal
-            if (c == '\'') {
-                advance(); // consume opening apostrophe
-                String content = readCharacter();
-                tokens.add(new Token(TokenType.CHARACTER_LITERAL, content));
-                continue;
-            }
+    /**
+     * Tokenizes the source code into a compact {@link TokenBuffer}. Token values
+     * are not copied; they are sliced from the source on demand.
+     * 
+     * @return Buffer with all tokens extracted from the source code
+     */
+    public TokenBuffer tokenizeToBuffer() {
+        LexEvent event = Events.recording() ? new LexEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        buffer = new TokenBuffer(source);
 
-            // identifiers / keywords
-            if (Character.isLetter(c) || c == '_' || c == '$') {
-                if (c == '$' && !(Character.isLetter(peekNext()) || peekNext() == '_')) {
-                    error("Unexpected character '" + c + "'", "Remove this.", DiagnosticType.LEXICAL);
-                }
+        TokenType type;
+        do {
+            type = scanToken();
+            emit(type, buffer);
+        } while (type != TokenType.EOF);
 
-                String ident = readIdentifier();
-                TokenType type = tokensTypeByString.getOrDefault(ident, TokenType.IDENTIFIER);
+        if (event != null) {
+            event.finish(filePath, source.length(), buffer.size(), recoveries);
+        }
+        return buffer;
+    }
 
-                if (type == TokenType.IDENTIFIER)
-                    tokens.add(new Token(type, ident));
-                else
-                    tokens.add(new Token(type));
-                continue;
-            }
+    /**
+     * Appends the token just scanned to {@code out}, with its symbol ID or
+     * numeric value.
+     */
+    void emit(TokenType type, TokenBuffer out) {
+        if (type == TokenType.NUMBER) {
+            out.addNumber(tokenStart, position, numberBits, numberDecimal);
+        } else if (type == TokenType.STRING_LITERAL || type == TokenType.CHARACTER_LITERAL) {
+            out.addLiteral(type, tokenStart, position, literalEscapes);
+        } else if (symbols != null && type == TokenType.IDENTIFIER) {
+            out.add(type, tokenStart, position, symbols.intern(source, tokenStart, position));
+        } else {
+            out.add(type, tokenStart, position);
+        }
+    }
 
-            // numbers
-            if (Character.isDigit(c)) {
-                String num = readNumber();
-                tokens.add(new Token(TokenType.NUMBER, num));
-                continue;
-            }
+    /**
+     * @return Map resolving token offsets of this source to lines and columns
+     */
+    public LineMap lineMap() {
+        return lines;
+    }
 
-            if (peek() == '/' && peekNext() == '/') {
-                // line comment
-                advance();
-                advance(); // consume '//'
-                while (!isAtEnd() && peek() != '\n')
-                    advance();
-                continue;
-            }
+    /**
+     * Checks if there are tokens left to be read with {@link #nextToken()}.
+     * 
+     * @return false once the EOF token has been returned, true otherwise
+     */
+    public boolean hasNext() {
+        return !exhausted;
+    }
 
-            if (peek() == '/' && peekNext() == '*') {
-                advance();
-                advance(); // consume '/*'
-                while (!isAtEnd()) {
-                    if (peek() == '*' && peekNext() == '/') {
-                        advance();
-                        advance(); // consume '*/'
-                        break;
-                    }
-                    if (peek() == '\n') {
-                        line++;
-                        column = 0;
-                    }
-                    advance();
-                }
-                continue;
-            }
+    /**
+     * Lexes and returns the next token, reading the source lazily. The EOF
+     * token is returned once, after which {@link #hasNext()} is false.
+     * 
+     * @return The next token of the source code
+     */
+    public Token nextToken() {
+        if (exhausted) {
+            throw new NoSuchElementException("No tokens left after EOF");
+        }
 
-            TokenType tokenType = tokensTypeByChar.getOrDefault(c, null);
+        TokenType type = scanToken();
+        int symbol = symbols != null && type == TokenType.IDENTIFIER
+                ? symbols.intern(source, tokenStart, position)
+                : TokenBuffer.NO_SYMBOL;
+        return new Token(type, TokenBuffer.valueOf(source, type, tokenStart, position), tokenStart, position, symbol);
+    }
 
-            switch (c) {
-                case '=' -> {
-                    advance();
+    /**
+     * Interns every IDENTIFIER into the given table, so tokens carry an
+     * {@code int} symbol ID alongside their offsets.
+     * 
+     * @param symbols Table to intern identifiers into, e.g.
+     *                {@link SymbolTable#global()}
+     * @return This lexer
+     */
+    public Lexer withSymbols(SymbolTable symbols) {
+        this.symbols = symbols;
+        return this;
+    }
 
-                    if (match('=')) {
-                        tokens.add(new Token(TokenType.DOUBLEEQUAL));
-                    } else {
-                        tokens.add(new Token(tokenType));
-                    }
+    /**
+     * Creates a cursor that streams tokens one at a time without materializing
+     * them, keeping constant token state regardless of the source size.
+     * 
+     * @return A cursor positioned before the first token
+     */
+    public TokenCursor cursor() {
+        return new TokenCursor(this);
+    }
 
-                    continue;
-                }
+    /**
+     * Scans the next token, skipping whitespace and comments. On return
+     * {@code tokenStart} and {@code position} delimit the lexeme.
+     * <p>
+     * In recovery mode a malformed lexeme is reported, skipped up to a resync
+     * point and returned as an ERROR token.
+     * 
+     * @return Type of the scanned token, EOF at the end of the source
+     */
+    TokenType scanToken() {
+        try {
+            return scan();
+        } catch (Recovery r) {
+            recover();
+            return TokenType.ERROR;
+        }
+    }
 
-                case '+' -> {
-                    advance();
-                    if (match('+')) {
-                        tokens.add(new Token(TokenType.INCREMENT));
+    private TokenType scan() {
+        while (!isAtEnd()) {
+            char c = peek();
+            tokenStart = position;
 
-                    } else {
-                        tokens.add(new Token(tokenType));
-                    }
+            // non-ASCII input in byte mode: decode just this code point
+            if (c >= 0x80 && utf8 != null) {
+                int cp = codePointAtPosition();
 
+                if (Character.isWhitespace(cp)) {
+                    position += Utf8Source.sequenceLength(c);
                     continue;
-
                 }
 
-                case '-' -> {
-                    advance();
-                    if (match('-')) {
-                        tokens.add(new Token(TokenType.DECREMENT));
-
-                    } else if (match('>')) {
-                        tokens.add(new Token(TokenType.ARROW));
-
-                    } else {
-                        tokens.add(new Token(tokenType));
-                    }
-
-                    continue;
+                if (Character.isLetter(cp)) {
+                    return readIdentifier();
                 }
 
-                case '*' -> {
-                    advance();
-                    if (match('*')) {
-                        tokens.add(new Token(TokenType.POWER));
+                error("Unexpected character '" + new String(Character.toChars(cp)) + "'", "Remove this.",
+                        DiagnosticType.LEXICAL);
+            }
 
-                    } else {
-                        tokens.add(new Token(tokenType));
-                    }
+            int charClass = c < 0x80 ? LexerTables.CHAR_CLASS[c] : classifyNonAscii(c);
 
+            switch (charClass) {
+                case LexerTables.WHITESPACE -> {
+                    position = scanner.skipWhitespace(position + 1, limit);
                     continue;
                 }
 
-                case '/' -> {
-                    advance();
-                    tokens.add(new Token(TokenType.DIVISION));
-                    continue;
+                case LexerTables.QUOTE -> {
+                    advance(); // consume opening quote
+                    literalEscapes = false;
+                    readString(); // now readString doesn't know about the quote
+                    return TokenType.STRING_LITERAL;
                 }
 
-                case '>' -> {
-                    advance();
-
-                    if (match('=')) {
-                        tokens.add(new Token(TokenType.GTE));
+                case LexerTables.APOSTROPHE -> {
+                    advance(); // consume opening apostrophe
+                    literalEscapes = false;
+                    readCharacter();
+                    return TokenType.CHARACTER_LITERAL;
+                }
 
-                    } else {
-                        tokens.add(new Token(tokenType));
+                case LexerTables.IDENTIFIER_START -> {
+                    return readIdentifier();
+                }
 
+                case LexerTables.DOLLAR -> {
+                    if (!(isLetterAt(position + 1) || peekNext() == '_')) {
+                        error("Unexpected character '" + c + "'", "Remove this.", DiagnosticType.LEXICAL);
                     }
 
-                    continue;
+                    return readIdentifier();
                 }
 
-                case '<' -> {
-                    advance();
-
-                    if (match('=')) {
-                        tokens.add(new Token(TokenType.LTE));
+                case LexerTables.DIGIT -> {
+                    readNumber();
+                    return TokenType.NUMBER;
+                }
 
-                    } else {
-                        tokens.add(new Token(tokenType));
+                case LexerTables.SLASH -> {
+                    if (peekNext() == '/') {
+                        // line comment
+                        advance();
+                        advance(); // consume '//'
+                        position = scanner.indexOfLineBreak(position, limit);
+                        continue;
+                    }
 
+                    if (peekNext() == '*') {
+                        advance();
+                        advance(); // consume '/*'
+                        skipBlockCommentBody();
+                        continue;
                     }
 
-                    continue;
+                    return readOperator();
                 }
 
-                case '!' -> {
-                    advance();
-
-                    if (match('=')) {
-                        tokens.add(new Token(TokenType.NOTEQUAL));
+                default -> {
+                    return readOperator();
+                }
+            }
+        }
 
-                    } else {
-                        tokens.add(new Token(TokenType.BANG));
+        tokenStart = position;
+        exhausted = true;
+        return TokenType.EOF;
+    }
 
-                    }
+    /**
+     * Skips the body of a block comment up to and including its closing
+     * {@code *}{@code /}. Reaching the end of the input first leaves
+     * {@code unterminatedComment} set.
+     */
+    private void skipBlockCommentBody() {
+        int end = scanner.indexOfCommentEnd(position, limit);
+        if (end < limit) {
+            position = end + 2; // consume '*/'
+            return;
+        }
 
-                    continue;
-                }
+        position = limit;
+        unterminatedComment = true;
+    }
 
-                case '&' -> {
-                    advance();
+    /**
+     * Lexes the range {@code [from, to)} into {@code out}, without an EOF token.
+     * The range must start at the beginning of a line and end just after a line
+     * break (or at the end of the source): only block comments can cross such
+     * a boundary.
+     * 
+     * @param from           Offset of the first character of the range
+     * @param to             Offset one past the last character of the range
+     * @param inBlockComment Whether {@code from} lies inside a block comment
+     * @param out            Buffer receiving the tokens
+     * @return true if the range ends inside an unterminated block comment
+     */
+    boolean tokenizeRange(int from, int to, boolean inBlockComment, TokenBuffer out) {
+        position = from;
+        tokenStart = from;
+        limit = to;
+        unterminatedComment = false;
+
+        if (inBlockComment) {
+            skipBlockCommentBody();
+        }
 
-                    if (match('&')) {
-                        tokens.add(new Token(TokenType.AND));
+        TokenType type;
+        while ((type = scanToken()) != TokenType.EOF) {
+            emit(type, out);
+        }
 
-                        continue;
-                    }
+        exhausted = false;
+        limit = source.length();
+        return unterminatedComment;
+    }
 
-                    error("Unexpected character '" + c + "'.", "Did you mean '&&'?", DiagnosticType.LEXICAL);
+    /**
+     * Moves the lexer to the given offset, which must be a point where no token,
+     * comment or literal is open (e.g. the end of a previous token).
+     * 
+     * @param offset Offset to resume lexing from
+     */
+    void seek(int offset) {
+        position = Objects.checkIndex(offset, source.length() + 1);
+        tokenStart = offset;
+        exhausted = false;
+    }
 
-                }
+    /**
+     * Classifies a non-ASCII character of a decoded source, with the same
+     * classes the ASCII range gets from {@link LexerTables#CHAR_CLASS}.
+     */
+    private int classifyNonAscii(char c) {
+        if (Character.isWhitespace(c))
+            return LexerTables.WHITESPACE;
+        if (Character.isLetter(c))
+            return LexerTables.IDENTIFIER_START;
+        if (Character.isDigit(c))
+            return LexerTables.DIGIT;
+        return LexerTables.OTHER;
+    }
 
-                case '|' -> {
-                    advance(); // consume first '|'
-                    if (match('|')) { // check/consume second '|'
-                        tokens.add(new Token(TokenType.OR));
-                    } else {
-                        error("Unexpected character '|'", "Did you mean '||'?", DiagnosticType.LEXICAL);
-                    }
-                    continue;
-                }
+    /**
+     * Checks if the given character is a digit, using the class table for ASCII.
+     */
+    private static boolean isDigit(char c) {
+        return c < 0x80 ? LexerTables.CHAR_CLASS[c] == LexerTables.DIGIT : Character.isDigit(c);
+    }
 
+    /**
+     * Reads a punctuation token by running the operator DFA from the current
+     * position, keeping the longest match.
+     * 
+     * @return The type of the longest operator found
+     */
+    private TokenType readOperator() {
+        int length = limit;
+        int state = LexerTables.START;
+        int scan = position;
+        int acceptedEnd = position;
+        TokenType accepted = null;
+
+        while (scan < length) {
+            char ch = source.charAt(scan);
+            int next = ch < 0x80 ? LexerTables.TRANSITIONS[(state << 7) | ch] : LexerTables.START;
+            if (next == LexerTables.START)
+                break;
+
+            state = next;
+            scan++;
+
+            TokenType type = LexerTables.ACCEPT[state];
+            if (type != null) {
+                accepted = type;
+                acceptedEnd = scan;
             }
+        }
 
-            if (tokenType == null) {
-                error("Unexpected character '" + c + "'", "Remove this.", DiagnosticType.LEXICAL);
-            }
+        char c = peek();
+        if (accepted == null) {
+            // '&' and '|' only exist doubled
+            position = scan;
 
-            tokens.add(new Token(tokenType));
-            advance();
+            switch (c) {
+                case '&' -> error("Unexpected character '&'.", "Did you mean '&&'?", DiagnosticType.LEXICAL);
+                case '|' -> error("Unexpected character '|'", "Did you mean '||'?", DiagnosticType.LEXICAL);
+                default -> error("Unexpected character '" + c + "'", "Remove this.", DiagnosticType.LEXICAL);
+            }
         }
 
-        tokens.add(new Token(TokenType.EOF));
-        return tokens;
+        position = acceptedEnd;
+        return accepted;
     }
 
     /**
@@ -249,7 +395,7 @@ public class Lexer {
      * @return true if at end of source, false otherwise
      */
     private boolean isAtEnd() {
-        return position >= source.length();
+        return position >= limit;
     }
 
     /**
@@ -270,20 +416,19 @@ public class Lexer {
      * @return Next character or '\0' if beyond source bounds
      */
     private char peekNext() {
-        if (position + 1 >= source.length())
+        if (position + 1 >= limit)
             return '\0';
         return source.charAt(position + 1);
     }
 
     /**
-     * Advances to the next character and updates position and column.
+     * Advances to the next character.
      * 
      * @return The character that was just consumed
      */
     private char advance() {
         char c = peek();
         position++;
-        column++;
         return c;
     }
 
@@ -304,19 +449,29 @@ public class Lexer {
     }
 
     /**
-     * Reads a string literal from the source code, handling escape sequences.
-     * 
-     * @return The string content without the surrounding quotes
+     * Reads a string literal from the source code, validating escape sequences
+     * and, in UTF-8 mode, the encoding of its text. The content is not copied,
+     * and escapes are only flagged: the token references its source range and
+     * is decoded when a consumer asks for it.
      */
-    private String readString() {
-        StringBuilder s = new StringBuilder();
+    private void readString() {
+        while (true) {
+            // ASCII text is skipped in bulk up to the next quote, escape, line break or non-ASCII character
+            position = scanner.indexOfStringSpecial(position, limit);
+            if (isAtEnd()) {
+                break;
+            }
+
+            if (peek() >= 0x80) {
+                readCodePoint();
+                continue;
+            }
 
-        while (!isAtEnd()) {
             char c = advance();
 
             // String closed
             if (c == '"') {
-                return s.toString();
+                return;
             }
 
             // Multiline not allowed
@@ -328,44 +483,37 @@ public class Lexer {
 
             // Escape
             if (c == '\\') {
+                literalEscapes = true;
                 if (isAtEnd()) {
                     error("Unclosed string: unexpected end of file",
                             "Expected \"",
                             DiagnosticType.LEXICAL);
                 }
 
-                char escaped = advance();
+                int escaped = readCodePoint();
 
                 switch (escaped) {
-                    case 'n' -> s.append("\\n");
-                    case 't' -> s.append("\\t");
-                    case '"' -> s.append("\\\"");
-                    case '\\' -> s.append("\\\\");
+                    case 'n', 't', '"', '\\' -> {
+                    }
                     default -> error(
-                            "Invalid escape sequence: \\" + escaped,
+                            "Invalid escape sequence: \\" + Character.toString(escaped),
                             "Use valid escapes: \\n, \\t, \\\", \\\\.",
                             DiagnosticType.LEXICAL);
                 }
-
-                continue;
             }
-
-            // Normal character
-            s.append(c);
         }
 
         error("Unclosed string: unexpected end of file",
                 "Expected \"",
                 DiagnosticType.LEXICAL);
-        return null; // unreachable
     }
 
     /**
-     * Reads a character literal from the source code, handling escape sequences.
-     * 
-     * @return The character content without the surrounding single quotes
+     * Reads a character literal from the source code, validating escape
+     * sequences. The content is not copied; the token value is sliced from the
+     * source.
      */
-    private String readCharacter() {
+    private void readCharacter() {
 
         if (isAtEnd()) {
             error("Unclosed character.",
@@ -373,7 +521,7 @@ public class Lexer {
                     DiagnosticType.LEXICAL);
         }
 
-        char c = advance();
+        int c = readCodePoint();
 
         // Literal cannot have line break
         if (c == '\n') {
@@ -382,28 +530,22 @@ public class Lexer {
                     DiagnosticType.LEXICAL);
         }
 
-        String value;
-
         if (c == '\\') {
+            literalEscapes = true;
             if (isAtEnd()) {
                 error("Unclosed character.",
                         "Expected '",
                         DiagnosticType.LEXICAL);
             }
 
-            char escaped = advance();
+            int escaped = readCodePoint();
 
             switch (escaped) {
-                case 'n' -> value = "\\n";
-                case 't' -> value = "\\t";
-                case '\'' -> value = "\\'";
-                case '\\' -> value = "\\\\";
-                default -> {
-                    error("Invalid escape: \\" + escaped,
-                            "Use valid escapes: \\n, \\t, \\', \\\\.",
-                            DiagnosticType.LEXICAL);
-                    return null; // unreachable
+                case 'n', 't', '\'', '\\' -> {
                 }
+                default -> error("Invalid escape: \\" + Character.toString(escaped),
+                        "Use valid escapes: \\n, \\t, \\', \\\\.",
+                        DiagnosticType.LEXICAL);
             }
         } else {
             // Check if there are more characters without closing
@@ -412,7 +554,6 @@ public class Lexer {
                         "A literal should be like 'a' or '\\n'.",
                         DiagnosticType.LEXICAL);
             }
-            value = String.valueOf(c);
         }
 
         // Expected closing '
@@ -423,44 +564,126 @@ public class Lexer {
         }
 
         advance(); // consume the '
-
-        return value;
     }
 
     /**
      * Reads an identifier or keyword from the source code.
      * 
-     * @return The identifier string
+     * @return The keyword type, or IDENTIFIER
      */
-    private String readIdentifier() {
-        StringBuilder s = new StringBuilder();
-        s.append(advance()); // consumes first char (letter or '_')
+    private TokenType readIdentifier() {
+        advanceCodePoint(); // consumes first char (letter, '_' or '$')
 
-        while (Character.isLetterOrDigit(peek()) || peek() == '_') {
-            s.append(advance());
+        int width;
+        while ((width = identifierPartWidth()) > 0) {
+            position += width;
         }
-        return s.toString();
+
+        return Keywords.lookup(source, tokenStart, position);
     }
 
     /**
-     * Reads a number (integer or decimal) from the source code.
+     * Measures the identifier character at the current position, decoding it
+     * only if it is a non-ASCII byte in UTF-8 mode.
      * 
-     * @return The number as a string
+     * @return Width of the character in source units, or 0 if it cannot continue
+     *         an identifier
      */
-    private String readNumber() {
-        StringBuilder s = new StringBuilder();
+    private int identifierPartWidth() {
+        char c = peek();
+        if (c < 0x80) {
+            return LexerTables.IDENTIFIER_PART[c] ? 1 : 0;
+        }
+        if (utf8 == null) {
+            return Character.isLetterOrDigit(c) ? 1 : 0;
+        }
+
+        return Character.isLetterOrDigit(codePointAtPosition()) ? Utf8Source.sequenceLength(c) : 0;
+    }
 
-        while (Character.isDigit(peek())) {
-            s.append(advance());
+    /**
+     * Checks if the character at the given offset is a letter, decoding it only
+     * if it is a non-ASCII byte in UTF-8 mode.
+     */
+    private boolean isLetterAt(int index) {
+        if (index >= source.length())
+            return false;
+
+        char c = source.charAt(index);
+        if (c < 0x80 || utf8 == null) {
+            return Character.isLetter(c);
+        }
+
+        return Character.isLetter(utf8.codePointAt(index));
+    }
+
+    /**
+     * Decodes the code point at the current position in UTF-8 mode, reporting
+     * malformed input.
+     */
+    private int codePointAtPosition() {
+        int cp = utf8.codePointAt(position);
+        if (cp < 0) {
+            error("Invalid UTF-8 sequence.", "Save the file with UTF-8 encoding.", DiagnosticType.LEXICAL);
+        }
+        return cp;
+    }
+
+    /**
+     * Advances over one whole character of a literal and decodes it: in UTF-8
+     * mode malformed input is reported, as in identifiers.
+     *
+     * @return The code point consumed
+     */
+    private int readCodePoint() {
+        char c = peek();
+        if (c >= 0x80 && utf8 != null) {
+            int cp = codePointAtPosition();
+            position += Utf8Source.sequenceLength(c);
+            return cp;
+        }
+
+        position++;
+        if (Character.isHighSurrogate(c) && position < limit && Character.isLowSurrogate(source.charAt(position))) {
+            return Character.toCodePoint(c, source.charAt(position++));
+        }
+        return c;
+    }
+
+    /**
+     * Advances over one whole character: a single char, or a complete UTF-8
+     * sequence in UTF-8 mode.
+     * 
+     * @return The first source unit of the consumed character
+     */
+    private char advanceCodePoint() {
+        char c = advance();
+        if (c >= 0x80 && utf8 != null) {
+            position += Math.max(1, Utf8Source.sequenceLength(c)) - 1;
+            if (position > limit) {
+                position = limit;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Reads a number (integer or decimal) from the source code and parses its
+     * value. The digits are not copied; the token value is sliced from the
+     * source.
+     */
+    private void readNumber() {
+        while (isDigit(peek())) {
+            advance();
         }
 
         // optional fraction
         if (peek() == '.') {
-            if (Character.isDigit(peekNext())) {
+            if (isDigit(peekNext())) {
 
-                s.append(advance()); // consume '.'
-                while (Character.isDigit(peek())) {
-                    s.append(advance());
+                advance(); // consume '.'
+                while (isDigit(peek())) {
+                    advance();
                 }
             } else {
                 error("Invalid decimal", "After '.' there must be a digit", DiagnosticType.LEXICAL);
@@ -469,11 +692,11 @@ public class Lexer {
         }
 
         if (peek() == '_') {
-            if (Character.isDigit(peekNext())) {
+            if (isDigit(peekNext())) {
 
-                s.append(advance()); // consume '_'
-                while (Character.isDigit(peek())) {
-                    s.append(advance());
+                advance(); // consume '_'
+                while (isDigit(peek())) {
+                    advance();
                 }
             } else {
                 error("Invalid integer", "After '_' there must be a digit", DiagnosticType.LEXICAL);
@@ -481,89 +704,212 @@ public class Lexer {
             }
         }
 
-        if (Character.isLetter(peek())) {
+        if (isLetterAt(position)) {
             error("Number followed by invalid identifier.",
                     "Identifiers cannot start with digits.",
                     DiagnosticType.LEXICAL);
         }
 
-        return s.toString();
+        parseNumber();
+    }
+
+    /**
+     * Parses the number in {@code [tokenStart, position)} into
+     * {@code numberBits}. Integers are accumulated exactly. Decimals whose
+     * digits fit in 53 bits, with at most 22 fraction digits, take the exact
+     * {@code mantissa / 10^n} path; longer ones are parsed by
+     * {@link Double#parseDouble}, which rounds correctly.
+     */
+    private void parseNumber() {
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean decimal = false;
+        boolean overflow = false;
+
+        for (int i = tokenStart; i < position; i++) {
+            char c = source.charAt(i);
+            if (c == '_') {
+                continue;
+            }
+            if (c == '.') {
+                decimal = true;
+                continue;
+            }
+
+            int digit = c < 0x80 ? c - '0' : Character.digit(c, 10);
+            if (mantissa > (Long.MAX_VALUE - digit) / 10) {
+                overflow = true;
+            } else {
+                mantissa = mantissa * 10 + digit;
+            }
+            if (decimal) {
+                fractionDigits++;
+            }
+        }
+
+        numberDecimal = decimal;
+        if (!decimal) {
+            if (overflow) {
+                errorAt(tokenStart, "Integer literal too large.",
+                        "The largest integer is " + Long.MAX_VALUE + ".",
+                        DiagnosticType.LEXICAL);
+            }
+            numberBits = mantissa;
+            return;
+        }
+
+        double value;
+        if (!overflow && mantissa <= MAX_EXACT_MANTISSA && fractionDigits < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[fractionDigits];
+        } else {
+            value = Double.parseDouble(numberText());
+        }
+
+        if (Double.isInfinite(value)) {
+            errorAt(tokenStart, "Decimal literal too large.",
+                    "The largest decimal is " + Double.MAX_VALUE + ".",
+                    DiagnosticType.LEXICAL);
+        }
+        numberBits = Double.doubleToRawLongBits(value);
+    }
+
+    /**
+     * Copies the current number without digit separators, for the slow path of
+     * {@link #parseNumber()}.
+     */
+    private String numberText() {
+        StringBuilder sb = new StringBuilder(position - tokenStart);
+        for (int i = tokenStart; i < position; i++) {
+            char c = source.charAt(i);
+            if (c == '.') {
+                sb.append(c);
+            } else if (c != '_') {
+                sb.append((char) ('0' + (c < 0x80 ? c - '0' : Character.digit(c, 10))));
+            }
+        }
+        return sb.toString();
     }
 
     /**
-     * Issues a formatted diagnostic error and throws an exception.
+     * Issues a formatted diagnostic error at the current position and throws an
+     * exception. The line and column are resolved through the {@link LineMap}
+     * only now, so the scanning loop never tracks them.
+     * <p>
+     * In recovery mode the diagnostic is reported to the collector instead, and
+     * a preallocated, stackless signal unwinds to {@link #scanToken()}.
      *
      * @param message   Error message that will be displayed
      * @param note      Note or tip on what to do to solve the problem
      * @param typeError Type of error to be issued (e.g., ERROR, WARNING)
      */
     public void error(String message, String note, DiagnosticType typeError) {
-        Span span = new Span(filePath, line, column + 1, line, column + 2);
+        errorAt(position, message, note, typeError);
+    }
+
+    /**
+     * Issues a diagnostic error at the given offset, like
+     * {@link #error(String, String, DiagnosticType)}.
+     */
+    private void errorAt(int offset, String message, String note, DiagnosticType typeError) {
+        // a line break consumed by a literal is reported at the end of its line
+        int shift = 0;
+        if (offset > tokenStart && source.charAt(offset - 1) == '\n') {
+            offset--;
+            shift = 1;
+        }
+
+        // the renderers show this diagnostic from the text that was lexed
+        if (filePath != null && !registered) {
+            SourceCache.shared().register(new SourceFile(filePath, source, lines));
+            registered = true;
+        }
+
+        int line = lines.line(offset);
+        int column = lines.column(offset) + shift;
+        Span span = new Span(filePath, line, column, line, column + 1);
 
         Diagnostic d = Diagnostic.builder(typeError, message)
                 .primary(span)
                 .addNote(new Note(note))
                 .build();
 
+        if (diagnostics != null) {
+            diagnostics.report(d);
+            throw Recovery.INSTANCE;
+        }
+
         throw new DiagnosticException(d);
     }
 
     /**
-     * Initializes the hash maps that map strings and characters to their
-     * corresponding token types.
-     */
-    private void initialzerhashMapTokensTypes() {
-        // Keywords
-        tokensTypeByString.put("return", TokenType.RETURN);
-        tokensTypeByString.put("if", TokenType.IF);
-        tokensTypeByString.put("otherwise", TokenType.OTHERWISE);
-        tokensTypeByString.put("afterall", TokenType.AFTERALL);
-        tokensTypeByString.put("for", TokenType.FOR);
-        tokensTypeByString.put("while", TokenType.WHILE);
-        tokensTypeByString.put("break", TokenType.BREAK);
-        tokensTypeByString.put("continue", TokenType.CONTINUE);
-        tokensTypeByString.put("public", TokenType.PUBLIC);
-        tokensTypeByString.put("private", TokenType.PRIVATE);
-        tokensTypeByString.put("protected", TokenType.PROTECTED);
-        tokensTypeByString.put("static", TokenType.STATIC);
-        tokensTypeByString.put("true", TokenType.TRUE);
-        tokensTypeByString.put("false", TokenType.FALSE);
-        tokensTypeByString.put("integer", TokenType.INTEGER);
-	tokensTypeByString.put("try", TokenType.TRY);
-	tokensTypeByString.put("catch", TokenType.CATCH);
-        tokensTypeByString.put("double", TokenType.DOUBLE);
-        tokensTypeByString.put("boolean", TokenType.BOOLEAN);
-        tokensTypeByString.put("character", TokenType.CHARACTER_TYPE);
-        tokensTypeByString.put("void", TokenType.VOID);
-	tokensTypeByString.put("null", TokenType.NULL);
-        tokensTypeByString.put("fresh", TokenType.FRESH);
-
-        // References
-        tokensTypeByString.put("String", TokenType.STRING_TYPE);
-
-        // Single-Characters
-        tokensTypeByChar.put('(', TokenType.LPAREN);
-        tokensTypeByChar.put(')', TokenType.RPAREN);
-        tokensTypeByChar.put('{', TokenType.LBRACE);
-        tokensTypeByChar.put('}', TokenType.RBRACE);
-        tokensTypeByChar.put('[', TokenType.LBRACKET);
-        tokensTypeByChar.put(']', TokenType.RBRACKET);
-        tokensTypeByChar.put(',', TokenType.COMMA);
-        tokensTypeByChar.put(';', TokenType.SEMICOLON);
-        tokensTypeByChar.put(':', TokenType.COLON);
-        tokensTypeByChar.put('.', TokenType.DOT);
-        tokensTypeByChar.put('+', TokenType.PLUS);
-        tokensTypeByChar.put('-', TokenType.MINUS);
-        tokensTypeByChar.put('*', TokenType.MULTIPLY);
-        tokensTypeByChar.put('/', TokenType.DIVISION);
-        tokensTypeByChar.put('%', TokenType.REMAINDER);
-        tokensTypeByChar.put('=', TokenType.ASSIGNMENT);
-        tokensTypeByChar.put('<', TokenType.LT);
-        tokensTypeByChar.put('>', TokenType.GT);
-        tokensTypeByChar.put('!', TokenType.BANG);
-
-        // Specials
-        tokensTypeByChar.put('@', TokenType.AT);
+     * Skips the rest of a malformed lexeme after an error, so lexing can resume
+     * at a sensible point: after the closing quote of a literal (or at the end
+     * of its line), or after the remaining characters of a bad number or
+     * identifier. Anything else resumes after the offending character, so a
+     * stray {@code &} or {@code #} does not swallow the identifier after it.
+     */
+    private void recover() {
+        recoveries++;
+
+        if (position == tokenStart) {
+            advanceCodePoint(); // always make progress
+        }
+
+        char first = source.charAt(tokenStart);
+        if (first == '"' || first == '\'') {
+            if (source.charAt(position - 1) != '\n') {
+                while (!isAtEnd() && peek() != '\n') {
+                    if (advance() == first) {
+                        break;
+                    }
+                }
+            }
+        } else if (startsWord(tokenStart)) {
+            int width;
+            while ((width = identifierPartWidth()) > 0) {
+                position += width;
+            }
+        }
+    }
+
+    /**
+     * Checks if the character at the given offset starts a number or an
+     * identifier ({@code $} alone is a stray character, not a word).
+     */
+    private boolean startsWord(int index) {
+        char c = source.charAt(index);
+        if (c < 0x80) {
+            int charClass = LexerTables.CHAR_CLASS[c];
+            return charClass == LexerTables.IDENTIFIER_START || charClass == LexerTables.DIGIT;
+        }
+        if (utf8 == null) {
+            return Character.isLetterOrDigit(c);
+        }
+
+        int cp = utf8.codePointAt(index);
+        return cp >= 0 && Character.isLetter(cp);
+    }
+
+    /**
+     * @return Number of errors recovered from so far (always 0 outside recovery
+     *         mode)
+     */
+    public int recoveryCount() {
+        return recoveries;
+    }
+
+    /**
+     * Control-flow signal used in recovery mode. It is preallocated and carries
+     * no stack trace, so reporting an error costs no more than the diagnostic.
+     */
+    private static final class Recovery extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        static final Recovery INSTANCE = new Recovery();
+
+        private Recovery() {
+            super(null, null, false, false);
+        }
     }
 
     /**
@@ -573,10 +919,65 @@ public class Lexer {
      * @param filePath The path of the source file (for error reporting)
      */
     public Lexer(String source, String filePath) {
+        this((CharSequence) source, filePath);
+    }
+
+    /**
+     * Constructs a new Lexer over any character sequence. A {@link Utf8Source}
+     * is lexed byte by byte, decoding only non-ASCII characters.
+     * 
+     * @param source   The source code to tokenize
+     * @param filePath The path of the source file (for error reporting)
+     */
+    public Lexer(CharSequence source, String filePath) {
+        this(source, filePath, null);
+    }
+
+    /**
+     * Constructs a new Lexer in recovery mode: instead of throwing on the first
+     * problem, every lexical error is reported to {@code diagnostics}, the bad
+     * lexeme becomes an ERROR token and lexing continues, so a single pass
+     * surfaces all errors.
+     * 
+     * @param source      The source code to tokenize
+     * @param filePath    The path of the source file (for error reporting)
+     * @param diagnostics Collector for lexical errors, or null to throw on the
+     *                    first one
+     */
+    public Lexer(CharSequence source, String filePath, DiagnosticCollector diagnostics) {
+        this.diagnostics = diagnostics;
         this.source = source;
+        this.limit = source.length();
+        this.utf8 = source instanceof Utf8Source u ? u : null;
+        this.scanner = SourceScanner.of(source);
         this.filePath = filePath;
+        this.lines = utf8 != null ? LineMap.ofUtf8(source) : LineMap.of(source);
+    }
 
-        initialzerhashMapTokensTypes();
+    /**
+     * Creates a Lexer that scans the memory-mapped file directly as UTF-8 bytes,
+     * without reading or decoding it up front.
+     * 
+     * @param path The source file to tokenize
+     * @return A Lexer over the mapped file
+     * @throws IOException if the file cannot be mapped
+     */
+    public static Lexer ofFile(Path path) throws IOException {
+        return ofFile(path, null);
+    }
+
+    /**
+     * Creates a Lexer over the memory-mapped file, in recovery mode if
+     * {@code diagnostics} is not null.
+     * 
+     * @param path        The source file to tokenize
+     * @param diagnostics Collector for lexical errors, or null to throw on the
+     *                    first one
+     * @return A Lexer over the mapped file
+     * @throws IOException if the file cannot be mapped
+     */
+    public static Lexer ofFile(Path path, DiagnosticCollector diagnostics) throws IOException {
+        return new Lexer(Utf8Source.map(path), path.toString(), diagnostics);
     }
 
     /**
@@ -585,6 +986,10 @@ public class Lexer {
      */
     public void testTokenize() {
         this.source = "integer x = 10;";
+        this.utf8 = null;
+        this.scanner = SourceScanner.of(source);
+        this.lines = LineMap.of(source);
+        this.limit = source.length();
 
         tokenize();
 
@@ -0,0 +1,138 @@
+package org.klang.core.lexer;
+
+import java.util.Arrays;
+
+/**
+ * Lookup tables driving the {@link Lexer} hot loop.
+ * <p>
+ * Both tables are generated once, when the class is loaded, from the token
+ * specification below (see {@code docs/LEXER_FUNCTIONING.MD}):
+ * <ul>
+ * <li>{@link #CHAR_CLASS}: a dense class table for the ASCII range, replacing
+ * {@code Character.isWhitespace/isLetter/isDigit} calls;</li>
+ * <li>{@link #TRANSITIONS} / {@link #ACCEPT}: a DFA over every punctuation
+ * token, so single and multi-character operators ({@code ->}, {@code **},
+ * {@code ==}, {@code &&}, ...) are recognized by one longest-match loop.</li>
+ * </ul>
+ */
+final class LexerTables {
+    // Character classes (ASCII only; non-ASCII input is classified by the lexer)
+    static final int OTHER = 0;
+    static final int WHITESPACE = 1;
+    static final int IDENTIFIER_START = 2;
+    static final int DOLLAR = 3;
+    static final int DIGIT = 4;
+    static final int QUOTE = 5;
+    static final int APOSTROPHE = 6;
+    static final int SLASH = 7;
+    static final int OPERATOR = 8;
+
+    /** DFA start state. A transition to {@code START} means "no transition". */
+    static final int START = 0;
+
+    static final byte[] CHAR_CLASS = new byte[128];
+    static final boolean[] IDENTIFIER_PART = new boolean[128];
+
+    /** Next DFA state, indexed by {@code state << 7 | ch}. */
+    static final byte[] TRANSITIONS;
+
+    /** Token accepted in each DFA state, or null if the state is not final. */
+    static final TokenType[] ACCEPT;
+
+    private static final int MAX_STATES = 64;
+    private static int stateCount = 1;
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            if (Character.isWhitespace(c)) {
+                CHAR_CLASS[c] = WHITESPACE;
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_') {
+                CHAR_CLASS[c] = IDENTIFIER_START;
+            } else if (c >= '0' && c <= '9') {
+                CHAR_CLASS[c] = DIGIT;
+            }
+
+            IDENTIFIER_PART[c] = Character.isLetterOrDigit(c) || c == '_';
+        }
+
+        CHAR_CLASS['$'] = DOLLAR;
+        CHAR_CLASS['"'] = QUOTE;
+        CHAR_CLASS['\''] = APOSTROPHE;
+
+        byte[] transitions = new byte[MAX_STATES << 7];
+        TokenType[] accept = new TokenType[MAX_STATES];
+
+        // Single-Characters
+        operator(transitions, accept, "(", TokenType.LPAREN);
+        operator(transitions, accept, ")", TokenType.RPAREN);
+        operator(transitions, accept, "{", TokenType.LBRACE);
+        operator(transitions, accept, "}", TokenType.RBRACE);
+        operator(transitions, accept, "[", TokenType.LBRACKET);
+        operator(transitions, accept, "]", TokenType.RBRACKET);
+        operator(transitions, accept, ",", TokenType.COMMA);
+        operator(transitions, accept, ";", TokenType.SEMICOLON);
+        operator(transitions, accept, ":", TokenType.COLON);
+        operator(transitions, accept, ".", TokenType.DOT);
+        operator(transitions, accept, "+", TokenType.PLUS);
+        operator(transitions, accept, "-", TokenType.MINUS);
+        operator(transitions, accept, "*", TokenType.MULTIPLY);
+        operator(transitions, accept, "/", TokenType.DIVISION);
+        operator(transitions, accept, "%", TokenType.REMAINDER);
+        operator(transitions, accept, "=", TokenType.ASSIGNMENT);
+        operator(transitions, accept, "<", TokenType.LT);
+        operator(transitions, accept, ">", TokenType.GT);
+        operator(transitions, accept, "!", TokenType.BANG);
+
+        // Multi-Characters
+        operator(transitions, accept, "++", TokenType.INCREMENT);
+        operator(transitions, accept, "--", TokenType.DECREMENT);
+        operator(transitions, accept, "**", TokenType.POWER);
+        operator(transitions, accept, "<=", TokenType.LTE);
+        operator(transitions, accept, ">=", TokenType.GTE);
+        operator(transitions, accept, "==", TokenType.DOUBLEEQUAL);
+        operator(transitions, accept, "!=", TokenType.NOTEQUAL);
+        operator(transitions, accept, "&&", TokenType.AND);
+        operator(transitions, accept, "||", TokenType.OR);
+        operator(transitions, accept, "->", TokenType.ARROW);
+
+        // Specials
+        operator(transitions, accept, "@", TokenType.AT);
+
+        // comments start with '/', which the lexer checks before running the DFA
+        CHAR_CLASS['/'] = SLASH;
+
+        TRANSITIONS = Arrays.copyOf(transitions, stateCount << 7);
+        ACCEPT = Arrays.copyOf(accept, stateCount);
+    }
+
+    private LexerTables() {
+    }
+
+    /**
+     * Adds the path for {@code text} to the DFA, creating intermediate states
+     * as needed, and marks its last state as accepting {@code type}.
+     */
+    private static void operator(byte[] transitions, TokenType[] accept, String text, TokenType type) {
+        int state = START;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int index = (state << 7) | c;
+
+            if (transitions[index] == START) {
+                if (stateCount == MAX_STATES) {
+                    throw new IllegalStateException("Too many lexer states");
+                }
+                transitions[index] = (byte) stateCount++;
+            }
+
+            state = transitions[index];
+        }
+
+        if (accept[state] != null) {
+            throw new IllegalStateException("Duplicate operator: " + text);
+        }
+
+        accept[state] = type;
+        CHAR_CLASS[text.charAt(0)] = OPERATOR;
+    }
+}
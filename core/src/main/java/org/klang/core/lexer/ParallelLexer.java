@@ -0,0 +1,196 @@
+package org.klang.core.lexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.klang.core.errors.Diagnostic;
+import org.klang.core.errors.DiagnosticCollector;
+import org.klang.core.errors.LineMap;
+import org.klang.core.jfr.Events;
+import org.klang.core.jfr.LexEvent;
+
+/**
+ * Lexes a single large source on several cores.
+ * <p>
+ * The source is split at line boundaries. At such a boundary the only state a
+ * lexer can carry over is "inside a block comment" (string and character
+ * literals cannot contain line breaks), so every chunk is first lexed
+ * speculatively, in parallel, assuming it starts outside a comment. The
+ * chunks are then stitched in order: when the state carried in from the
+ * previous chunk differs from the assumption, the chunk is lexed again from
+ * its true state. The result is identical to a sequential
+ * {@link Lexer#tokenizeToBuffer()}, including diagnostics, whose positions all
+ * resolve through one shared {@link LineMap}.
+ */
+public final class ParallelLexer {
+    static final int MIN_CHUNK_SIZE = 256 * 1024;
+
+    /**
+     * Sources shorter than this are not split: {@link #tokenize} lexes them
+     * sequentially, on the calling thread.
+     */
+    public static final int MIN_PARALLEL_SIZE = 2 * MIN_CHUNK_SIZE;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelLexer() {
+    }
+
+    /**
+     * Tokenizes the source on the common pool, throwing on the first error.
+     *
+     * @param source   The source code to tokenize
+     * @param filePath The path of the source file (for error reporting)
+     * @return Buffer with all tokens, in source order
+     */
+    public static TokenBuffer tokenize(CharSequence source, String filePath) {
+        return tokenize(source, filePath, null, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Tokenizes the source on the given pool.
+     *
+     * @param source      The source code to tokenize
+     * @param filePath    The path of the source file (for error reporting)
+     * @param diagnostics Collector for lexical errors (recovery mode), or null to
+     *                    throw on the first one
+     * @param pool        Pool the chunks are lexed on
+     * @return Buffer with all tokens, in source order
+     */
+    public static TokenBuffer tokenize(CharSequence source, String filePath,
+            DiagnosticCollector diagnostics, ForkJoinPool pool) {
+        int length = source.length();
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, length / (pool.getParallelism() * CHUNKS_PER_THREAD));
+
+        if (length < 2 * chunkSize) {
+            return new Lexer(source, filePath, diagnostics).tokenizeToBuffer();
+        }
+
+        LexEvent event = Events.recording() ? new LexEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+        List<Chunk> chunks = split(source, chunkSize);
+
+        // one line map for every chunk: it is only built if a diagnostic needs it
+        LineMap lines = new Lexer(source, filePath).lineMap();
+
+        // speculative pass: assume every chunk starts outside a comment
+        List<Callable<Chunk>> lexes = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            lexes.add(() -> chunk.lex(source, filePath, lines, diagnostics != null, false));
+        }
+        pool.invokeAll(lexes).forEach(ParallelLexer::join);
+
+        // stitch in order, re-lexing chunks whose real start state differs
+        TokenBuffer result = new TokenBuffer(source, chunks.stream().mapToInt(c -> c.tokens.size()).sum() + 1);
+        boolean inBlockComment = false;
+        int recoveries = 0;
+
+        for (Chunk chunk : chunks) {
+            if (chunk.startsInComment != inBlockComment) {
+                chunk.lex(source, filePath, lines, diagnostics != null, inBlockComment);
+            }
+
+            if (chunk.failure != null) {
+                throw chunk.failure;
+            }
+
+            result.addRange(chunk.tokens, 0, chunk.tokens.size(), 0);
+            if (diagnostics != null) {
+                for (Diagnostic d : chunk.diagnostics.all()) {
+                    diagnostics.report(d);
+                }
+            }
+
+            inBlockComment = chunk.endsInComment;
+            recoveries += chunk.recoveries;
+        }
+
+        result.add(TokenType.EOF, length, length);
+        if (event != null) {
+            event.finish(filePath, length, result.size(), recoveries);
+        }
+        return result;
+    }
+
+    /**
+     * Splits the source into ranges of roughly {@code chunkSize} characters,
+     * each ending just after a line break (or at the end of the source).
+     */
+    private static List<Chunk> split(CharSequence source, int chunkSize) {
+        List<Chunk> chunks = new ArrayList<>();
+        int length = source.length();
+        int from = 0;
+
+        while (from < length) {
+            int to = Math.min(length, from + chunkSize);
+            while (to < length && source.charAt(to - 1) != '\n') {
+                to++;
+            }
+
+            chunks.add(new Chunk(from, to));
+            from = to;
+        }
+
+        return chunks;
+    }
+
+    private static <T> T join(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while lexing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static final class Chunk {
+        final int from;
+        final int to;
+
+        boolean startsInComment;
+        boolean endsInComment;
+        TokenBuffer tokens;
+        DiagnosticCollector diagnostics;
+        int recoveries;
+        RuntimeException failure;
+
+        Chunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Lexes this chunk from the given start state, keeping the outcome
+         * (tokens, diagnostics or the first error) for the stitching pass.
+         */
+        Chunk lex(CharSequence source, String filePath, LineMap lines, boolean recover, boolean inBlockComment) {
+            startsInComment = inBlockComment;
+            tokens = new TokenBuffer(source, Math.max(16, (to - from) / 4));
+            diagnostics = recover ? new DiagnosticCollector() : null;
+            recoveries = 0;
+            failure = null;
+
+            try {
+                Lexer lexer = new Lexer(source, filePath, diagnostics);
+                lexer.lines = lines;
+                endsInComment = lexer.tokenizeRange(from, to, inBlockComment, tokens);
+                recoveries = lexer.recoveryCount();
+            } catch (RuntimeException e) {
+                // only surfaces if this start state turns out to be the real one
+                failure = e;
+            }
+
+            return this;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.klang.core.lexer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Bulk scans over the runs the lexer skips without producing tokens:
+ * whitespace, line and block comment bodies, and the plain ASCII text of
+ * string literals.
+ * <p>
+ * {@link #of(CharSequence)} picks a SIMD implementation built on
+ * {@code jdk.incubator.vector} for {@link Utf8Source} inputs when it is
+ * enabled with {@code -Dklang.lexer.simd=true} and that module is available
+ * (run with {@code --add-modules jdk.incubator.vector}), and this scalar
+ * implementation otherwise. Both return the same results.
+ * <p>
+ * The SIMD scanner is opt-in while the incubating module costs a startup
+ * warning and JIT-dependent allocation.
+ */
+class SourceScanner {
+    /** System property that enables the SIMD scanner. */
+    static final String SIMD_PROPERTY = "klang.lexer.simd";
+
+    private static final MethodHandle VECTOR_SCANNER = Boolean.getBoolean(SIMD_PROPERTY) ? loadVectorScanner() : null;
+
+    final CharSequence source;
+
+    SourceScanner(CharSequence source) {
+        this.source = source;
+    }
+
+    /**
+     * @return The fastest scanner available for the given source
+     */
+    static SourceScanner of(CharSequence source) {
+        if (VECTOR_SCANNER != null && source instanceof Utf8Source utf8) {
+            try {
+                return (SourceScanner) VECTOR_SCANNER.invoke(utf8);
+            } catch (Throwable e) {
+                throw new IllegalStateException("Cannot create vector scanner", e);
+            }
+        }
+        return new SourceScanner(source);
+    }
+
+    /**
+     * @return Whether the SIMD scanner is in use for UTF-8 sources
+     */
+    static boolean isVectorized() {
+        return VECTOR_SCANNER != null;
+    }
+
+    private static MethodHandle loadVectorScanner() {
+        try {
+            Class<?> type = Class.forName("org.klang.core.lexer.VectorSourceScanner");
+            return MethodHandles.lookup().findConstructor(type, MethodType.methodType(void.class, Utf8Source.class));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null; // jdk.incubator.vector is not in the module graph
+        }
+    }
+
+    /**
+     * @return The first offset in {@code [from, to)} that is not ASCII
+     *         whitespace, or {@code to}
+     */
+    int skipWhitespace(int from, int to) {
+        int i = from;
+        while (i < to && isAsciiWhitespace(source.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return Offset of the first {@code '\n'} in {@code [from, to)}, or
+     *         {@code to}
+     */
+    int indexOfLineBreak(int from, int to) {
+        int i = from;
+        while (i < to && source.charAt(i) != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return Offset of the first {@code '*'} in {@code [from, to)} followed
+     *         by {@code '/'} within the range, or {@code to}
+     */
+    int indexOfCommentEnd(int from, int to) {
+        for (int i = from; i + 1 < to; i++) {
+            if (source.charAt(i) == '*' && source.charAt(i + 1) == '/') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Non-ASCII characters stop the scan too, so the lexer can check that a
+     * UTF-8 literal is well-formed.
+     *
+     * @return Offset of the first {@code '"'}, {@code '\\'}, {@code '\n'} or
+     *         non-ASCII character in {@code [from, to)}, or {@code to}
+     */
+    int indexOfStringSpecial(int from, int to) {
+        int i = from;
+        while (i < to) {
+            char c = source.charAt(i);
+            if (c == '"' || c == '\\' || c == '\n' || c >= 0x80) {
+                return i;
+            }
+            i++;
+        }
+        return to;
+    }
+
+    static boolean isAsciiWhitespace(char c) {
+        return c < 0x80 && LexerTables.CHAR_CLASS[c] == LexerTables.WHITESPACE;
+    }
+}
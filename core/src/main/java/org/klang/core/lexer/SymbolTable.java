@@ -0,0 +1,168 @@
+package org.klang.core.lexer;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe table interning identifier text into dense {@code int} IDs.
+ * <p>
+ * IDs start at 0 and are assigned in first-seen order. The same name always
+ * maps to the same ID within a table, so later passes can compare names with
+ * {@code ==} on ints. {@link #global()} is shared by every file lexed in the
+ * process.
+ * <p>
+ * A table never shrinks: a name stays interned, and its ID valid, for as long
+ * as the table is reachable. The global table therefore grows with every
+ * distinct name a process sees; a long-lived process lexing unrelated inputs
+ * (e.g. {@code kc daemon}) should give each unit of work a table of its own.
+ * <p>
+ * Looking up a name that is already interned does not allocate: the source
+ * range is hashed and compared in place. Only the first occurrence of a name
+ * materializes its {@code String}.
+ */
+public final class SymbolTable {
+    private static final SymbolTable GLOBAL = new SymbolTable();
+
+    // keys are the interned Strings; lookups probe with a RangeKey
+    private final ConcurrentHashMap<Object, Integer> ids = new ConcurrentHashMap<>();
+    private final ThreadLocal<RangeKey> probes = ThreadLocal.withInitial(RangeKey::new);
+    private final Object lock = new Object();
+    private volatile String[] names = new String[256];
+    private int count; // guarded by lock
+
+    /**
+     * @return The table shared by all lexers of this process
+     */
+    public static SymbolTable global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Interns the given name.
+     *
+     * @return The ID of the name
+     */
+    public int intern(CharSequence name) {
+        return intern(name, 0, name.length());
+    }
+
+    /**
+     * Interns the text of {@code source[start, end)} without copying it unless
+     * it has never been seen before.
+     *
+     * @return The ID of the name
+     */
+    public int intern(CharSequence source, int start, int end) {
+        Objects.checkFromToIndex(start, end, source.length());
+
+        // the probe hashes chars; UTF-8 bytes only match String hashes for ASCII
+        if (source instanceof Utf8Source && !isAscii(source, start, end)) {
+            String decoded = source.subSequence(start, end).toString();
+            return intern(decoded, 0, decoded.length());
+        }
+
+        RangeKey probe = probes.get().set(source, start, end);
+        try {
+            Integer id = ids.get(probe);
+            if (id != null) {
+                return id;
+            }
+
+            synchronized (lock) {
+                id = ids.get(probe);
+                if (id != null) {
+                    return id;
+                }
+
+                String name = source.subSequence(start, end).toString();
+                int next = count;
+                if (next == names.length) {
+                    names = Arrays.copyOf(names, next * 2);
+                }
+
+                names[next] = name; // published before the ID becomes visible
+                ids.put(name, next);
+                count = next + 1;
+                return next;
+            }
+        } finally {
+            probe.clear();
+        }
+    }
+
+    /**
+     * @return The name interned under the given ID
+     */
+    public String name(int id) {
+        String[] snapshot = names;
+        if (id < 0 || id >= snapshot.length || snapshot[id] == null) {
+            throw new IllegalArgumentException("Unknown symbol id: " + id);
+        }
+        return snapshot[id];
+    }
+
+    /**
+     * @return Number of interned names
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    private static boolean isAscii(CharSequence source, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (source.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lookup key over a source range. Its hash matches {@link String#hashCode()}
+     * of the same text and it equals a {@code String} with the same chars, so it
+     * can probe a map keyed by Strings.
+     */
+    private static final class RangeKey {
+        private CharSequence source;
+        private int start;
+        private int end;
+        private int hash;
+
+        RangeKey set(CharSequence source, int start, int end) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + source.charAt(i);
+            }
+            this.hash = h;
+            return this;
+        }
+
+        void clear() {
+            source = null;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof String name) || name.length() != end - start) {
+                return false;
+            }
+
+            for (int i = 0; i < name.length(); i++) {
+                if (name.charAt(i) != source.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
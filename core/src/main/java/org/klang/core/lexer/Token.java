@@ -3,12 +3,31 @@ package org.klang.core.lexer;
 public class Token {
     TokenType type;
     String value;
+    int start = -1, end = -1; // source offsets, -1 when unknown
+    int symbol = TokenBuffer.NO_SYMBOL;
 
     public Token(TokenType type, String value) {
         this.type = type;
         this.value = value;
     }
 
+    /**
+     * Creates a token addressable in its source. Lines and columns are not
+     * stored; resolve them with the lexer's {@link org.klang.core.errors.LineMap}.
+     *
+     * @param start  Offset of the first character of the token
+     * @param end    Offset one past the last character of the token
+     * @param symbol Symbol ID of an interned identifier, or
+     *               {@link TokenBuffer#NO_SYMBOL}
+     */
+    public Token(TokenType type, String value, int start, int end, int symbol) {
+        this.type = type;
+        this.value = value;
+        this.start = start;
+        this.end = end;
+        this.symbol = symbol;
+    }
+
     public Token(TokenType type) {
         this.type = type;
     }
@@ -18,6 +37,28 @@ public class Token {
         this.value = String.valueOf(value);
     }
 
+    /**
+     * @return Offset of the first character of the token, or -1 if unknown
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * @return Offset one past the last character of the token, or -1 if unknown
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * @return ID of the identifier in a {@link SymbolTable}, or
+     *         {@link TokenBuffer#NO_SYMBOL} if it was not interned
+     */
+    public int symbol() {
+        return symbol;
+    }
+
     @Override
     public String toString() {
         String saida = "" + type;
@@ -0,0 +1,575 @@
+package org.klang.core.lexer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * Compact struct-of-arrays storage for a token stream.
+ * <p>
+ * Each token is stored as a {@link TokenType} ordinal plus its start/end
+ * offsets in the source, in growable primitive arrays. Token values are not
+ * copied at lex time: they are sliced from the source only when requested.
+ * <p>
+ * Side arrays, allocated on first use, hold what the lexer already computed:
+ * symbol IDs of interned identifiers, and the parsed value of every NUMBER
+ * (a {@code long}, or the bits of a {@code double} when
+ * {@link #FLAG_DECIMAL} is set). String and character literals are kept
+ * as source ranges; {@link #FLAG_ESCAPES} marks the few that need decoding.
+ * The buffer is append-only, so slots past
+ * {@link #size()} are still zero when a token is added.
+ */
+public final class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /** Symbol ID of tokens that were not interned. */
+    public static final int NO_SYMBOL = -1;
+
+    /** Flag of NUMBER tokens whose value is a {@code double}. */
+    static final byte FLAG_DECIMAL = 1;
+
+    /** Flag of literal tokens containing escape sequences. */
+    static final byte FLAG_ESCAPES = 2;
+
+    private final CharSequence source;
+    private byte[] types;
+    private int[] starts;
+    private int[] ends;
+    private int[] symbols; // allocated on the first interned identifier
+    private long[] numbers; // allocated on the first NUMBER
+    private byte[] flags; // allocated on the first flagged token
+    private int size;
+
+    /**
+     * Creates an empty buffer over the given source.
+     *
+     * @param source The source the token offsets refer to
+     */
+    public TokenBuffer(CharSequence source) {
+        this(source, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty buffer over the given source with an initial capacity.
+     *
+     * @param source          The source the token offsets refer to
+     * @param initialCapacity Number of tokens to reserve room for
+     */
+    public TokenBuffer(CharSequence source, int initialCapacity) {
+        this.source = Objects.requireNonNull(source);
+        int capacity = Math.max(1, initialCapacity);
+        this.types = new byte[capacity];
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+    }
+
+    /**
+     * Appends a token.
+     *
+     * @param type  Token type
+     * @param start Offset of the first character of the token
+     * @param end   Offset one past the last character of the token
+     */
+    void add(TokenType type, int start, int end) {
+        if (size == types.length) {
+            grow();
+        }
+
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        ends[size] = end;
+        if (symbols != null) {
+            symbols[size] = NO_SYMBOL;
+        }
+        size++;
+    }
+
+    /**
+     * Appends a token carrying a symbol ID.
+     *
+     * @param symbol ID of the token text in a {@link SymbolTable}
+     */
+    void add(TokenType type, int start, int end, int symbol) {
+        add(type, start, end);
+        if (symbols == null) {
+            symbols = new int[types.length];
+            Arrays.fill(symbols, NO_SYMBOL);
+        }
+        symbols[size - 1] = symbol;
+    }
+
+    /**
+     * Appends a NUMBER token with its parsed value.
+     *
+     * @param bits    The value, or {@link Double#doubleToRawLongBits} of it if
+     *                {@code decimal}
+     * @param decimal Whether the literal is a {@code double}
+     */
+    void addNumber(int start, int end, long bits, boolean decimal) {
+        add(TokenType.NUMBER, start, end);
+        if (numbers == null) {
+            numbers = new long[types.length];
+        }
+        numbers[size - 1] = bits;
+        if (decimal) {
+            flags()[size - 1] = FLAG_DECIMAL;
+        }
+    }
+
+    /**
+     * Appends a STRING_LITERAL or CHARACTER_LITERAL token.
+     *
+     * @param escapes Whether the literal contains escape sequences
+     */
+    void addLiteral(TokenType type, int start, int end, boolean escapes) {
+        add(type, start, end);
+        if (escapes) {
+            flags()[size - 1] |= FLAG_ESCAPES;
+        }
+    }
+
+    private byte[] flags() {
+        if (flags == null) {
+            flags = new byte[types.length];
+        }
+        return flags;
+    }
+
+    /**
+     * Appends tokens {@code [from, to)} of another buffer, shifting their
+     * offsets by {@code delta}. The arrays are copied in bulk; no token is
+     * re-lexed or materialized.
+     */
+    void addRange(TokenBuffer other, int from, int to, int delta) {
+        Objects.checkFromToIndex(from, to, other.size);
+        int count = to - from;
+        ensureCapacity(size + count);
+
+        System.arraycopy(other.types, from, types, size, count);
+        System.arraycopy(other.starts, from, starts, size, count);
+        System.arraycopy(other.ends, from, ends, size, count);
+        if (other.symbols != null || symbols != null) {
+            if (symbols == null) {
+                symbols = new int[types.length];
+                Arrays.fill(symbols, 0, size, NO_SYMBOL);
+            }
+            if (other.symbols != null) {
+                System.arraycopy(other.symbols, from, symbols, size, count);
+            } else {
+                Arrays.fill(symbols, size, size + count, NO_SYMBOL);
+            }
+        }
+        if (other.numbers != null) {
+            if (numbers == null) {
+                numbers = new long[types.length];
+            }
+            System.arraycopy(other.numbers, from, numbers, size, count);
+        }
+        if (other.flags != null) {
+            System.arraycopy(other.flags, from, flags(), size, count);
+        }
+
+        if (delta != 0) {
+            for (int i = size; i < size + count; i++) {
+                starts[i] += delta;
+                ends[i] += delta;
+            }
+        }
+
+        size += count;
+    }
+
+    /**
+     * @return Number of bytes {@link #writeTo(ByteBuffer)} produces
+     */
+    int serializedSize() {
+        return Math.toIntExact(8L + arraysSize(size, present()));
+    }
+
+    /**
+     * Writes the token arrays (without symbol IDs, which are only meaningful
+     * within one process) in bulk. {@code out} should be little-endian.
+     */
+    void writeTo(ByteBuffer out) {
+        out.putInt(size);
+        out.put(present());
+        out.put(new byte[3]);
+
+        out.put(types, 0, size).position(out.position() + align(size) - size);
+        out.asIntBuffer().put(starts, 0, size);
+        out.position(out.position() + 4 * size);
+        out.asIntBuffer().put(ends, 0, size);
+        out.position(out.position() + 4 * size);
+        if (numbers != null) {
+            out.asLongBuffer().put(numbers, 0, size);
+            out.position(out.position() + 8 * size);
+        }
+        if (flags != null) {
+            out.put(flags, 0, size).position(out.position() + align(size) - size);
+        }
+    }
+
+    /**
+     * Reads a buffer written by {@link #writeTo(ByteBuffer)}. The arrays are
+     * copied in bulk, never token by token, then checked in one pass: the data
+     * may come from a damaged or foreign file.
+     *
+     * @param source The source the token offsets refer to
+     * @return The buffer, or null if the data is not a token stream over this
+     *         source (a count larger than the data, an unknown token type, or
+     *         offsets outside the source or out of order)
+     */
+    static TokenBuffer readFrom(CharSequence source, ByteBuffer in) {
+        if (in.remaining() < 8) {
+            return null;
+        }
+        int count = in.getInt();
+        byte present = in.get();
+        in.position(in.position() + 3);
+
+        if (count < 0 || arraysSize(count, present) > in.remaining()) {
+            return null;
+        }
+
+        TokenBuffer buffer = new TokenBuffer(source, count);
+        in.get(buffer.types, 0, count).position(in.position() + align(count) - count);
+        in.asIntBuffer().get(buffer.starts, 0, count);
+        in.position(in.position() + 4 * count);
+        in.asIntBuffer().get(buffer.ends, 0, count);
+        in.position(in.position() + 4 * count);
+        if ((present & 1) != 0) {
+            buffer.numbers = new long[buffer.types.length];
+            in.asLongBuffer().get(buffer.numbers, 0, count);
+            in.position(in.position() + 8 * count);
+        }
+        if ((present & 2) != 0) {
+            in.get(buffer.flags(), 0, count).position(in.position() + align(count) - count);
+        }
+
+        buffer.size = count;
+        return buffer.isValid() ? buffer : null;
+    }
+
+    /**
+     * @return Bytes {@link #writeTo(ByteBuffer)} writes after the count for
+     *         {@code count} tokens and the given side arrays
+     */
+    private static long arraysSize(int count, byte present) {
+        return align(count) + 8L * count
+                + ((present & 1) != 0 ? 8L * count : 0)
+                + ((present & 2) != 0 ? align(count) : 0);
+    }
+
+    /**
+     * Checks that every type is a known {@link TokenType} and that the tokens
+     * lie inside the source, in order and without overlapping.
+     */
+    private boolean isValid() {
+        int length = source.length();
+        int previousEnd = 0;
+        for (int i = 0; i < size; i++) {
+            if (Byte.toUnsignedInt(types[i]) >= TYPES.length
+                    || starts[i] < previousEnd || ends[i] < starts[i] || ends[i] > length) {
+                return false;
+            }
+            previousEnd = ends[i];
+        }
+        return true;
+    }
+
+    /**
+     * @return Bits of the side arrays written after the offsets: 1 for the
+     *         numbers, 2 for the flags
+     */
+    private byte present() {
+        return (byte) ((numbers != null ? 1 : 0) | (flags != null ? 2 : 0));
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    /**
+     * Finds the first token whose end offset is at least {@code offset}.
+     * Offsets are monotonic, so this is a binary search.
+     *
+     * @return The token index, or {@link #size()} if there is none
+     */
+    int firstEndingAtOrAfter(int offset) {
+        return lowerBound(ends, offset);
+    }
+
+    /**
+     * Finds the first token whose start offset is at least {@code offset}.
+     *
+     * @return The token index, or {@link #size()} if there is none
+     */
+    int firstStartingAtOrAfter(int offset) {
+        return lowerBound(starts, offset);
+    }
+
+    private int lowerBound(int[] offsets, int offset) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (offsets[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void grow() {
+        ensureCapacity(types.length + (types.length >> 1) + 1);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= types.length) {
+            return;
+        }
+
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        ends = Arrays.copyOf(ends, capacity);
+        if (symbols != null) {
+            symbols = Arrays.copyOf(symbols, capacity);
+        }
+        if (numbers != null) {
+            numbers = Arrays.copyOf(numbers, capacity);
+        }
+        if (flags != null) {
+            flags = Arrays.copyOf(flags, capacity);
+        }
+    }
+
+    /**
+     * @return Number of tokens in the buffer
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The source the token offsets refer to
+     */
+    public CharSequence source() {
+        return source;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[Objects.checkIndex(index, size)]];
+    }
+
+    public int start(int index) {
+        return starts[Objects.checkIndex(index, size)];
+    }
+
+    public int end(int index) {
+        return ends[Objects.checkIndex(index, size)];
+    }
+
+    /**
+     * Returns the symbol ID of an identifier token, when the lexer interned
+     * identifiers into a {@link SymbolTable}.
+     *
+     * @return The symbol ID, or {@link #NO_SYMBOL}
+     */
+    public int symbol(int index) {
+        Objects.checkIndex(index, size);
+        return symbols == null ? NO_SYMBOL : symbols[index];
+    }
+
+    /**
+     * Checks if the NUMBER at the given index is a decimal literal.
+     */
+    public boolean isDecimal(int index) {
+        checkNumber(index);
+        return flags != null && (flags[index] & FLAG_DECIMAL) != 0;
+    }
+
+    /**
+     * Returns the value of the NUMBER at the given index, as parsed by the
+     * lexer (digit separators removed). Decimals are truncated.
+     */
+    public long longValue(int index) {
+        return isDecimal(index) ? (long) Double.longBitsToDouble(numbers[index]) : numbers[index];
+    }
+
+    /**
+     * Returns the value of the NUMBER at the given index, as parsed by the
+     * lexer (digit separators removed).
+     */
+    public double doubleValue(int index) {
+        return isDecimal(index) ? Double.longBitsToDouble(numbers[index]) : numbers[index];
+    }
+
+    private void checkNumber(int index) {
+        if (type(index) != TokenType.NUMBER) {
+            throw new IllegalArgumentException("Token " + index + " is not a NUMBER: " + type(index));
+        }
+    }
+
+    /**
+     * Checks if the token at the given index carries a value (identifiers,
+     * numbers, literals and the text of error tokens).
+     */
+    public boolean hasValue(int index) {
+        return hasValue(type(index));
+    }
+
+    /**
+     * Slices the value of the token at the given index out of the source.
+     * String and character literals are returned without their quotes.
+     *
+     * @return The token value, or null for tokens without a value
+     */
+    public String value(int index) {
+        return valueOf(source, type(index), starts[index], ends[index]);
+    }
+
+    /**
+     * Returns the value of the token at the given index as a view of the
+     * source, without copying it. Literals are returned without their quotes
+     * and with their escape sequences as written.
+     *
+     * @return The token text, or null for tokens without a value
+     */
+    public CharSequence text(int index) {
+        return textOf(source, type(index), starts[index], ends[index]);
+    }
+
+    /**
+     * Checks if the literal at the given index contains escape sequences, i.e.
+     * if {@link #literal(int)} has to decode it.
+     */
+    public boolean hasEscapes(int index) {
+        Objects.checkIndex(index, size);
+        return flags != null && (flags[index] & FLAG_ESCAPES) != 0;
+    }
+
+    /**
+     * Returns the value of the STRING_LITERAL or CHARACTER_LITERAL at the given
+     * index, with its escape sequences decoded. Escapes are only decoded now,
+     * and only for literals that contain them.
+     */
+    public String literal(int index) {
+        TokenType type = type(index);
+        if (type != TokenType.STRING_LITERAL && type != TokenType.CHARACTER_LITERAL) {
+            throw new IllegalArgumentException("Token " + index + " is not a literal: " + type);
+        }
+
+        CharSequence text = text(index);
+        return hasEscapes(index) ? unescape(text) : text.toString();
+    }
+
+    /**
+     * Materializes the token at the given index.
+     */
+    public Token get(int index) {
+        return new Token(type(index), value(index), start(index), end(index), symbol(index));
+    }
+
+    /**
+     * Returns a read-only {@code List<Token>} view of this buffer. Tokens are
+     * materialized on access, so the view is cheap to create but each
+     * {@code get} allocates.
+     */
+    public List<Token> asList() {
+        return new TokenListView();
+    }
+
+    /**
+     * Slices the value of a lexeme out of the source.
+     *
+     * @return The token value, or null for tokens without a value
+     */
+    static String valueOf(CharSequence source, TokenType type, int start, int end) {
+        if (!hasValue(type)) {
+            return null;
+        }
+
+        if (type == TokenType.STRING_LITERAL || type == TokenType.CHARACTER_LITERAL) {
+            start++;
+            end--;
+        }
+
+        return source.subSequence(start, end).toString();
+    }
+
+    /**
+     * Returns the value of a lexeme as a view of the source.
+     *
+     * @return The token text, or null for tokens without a value
+     */
+    static CharSequence textOf(CharSequence source, TokenType type, int start, int end) {
+        if (!hasValue(type)) {
+            return null;
+        }
+
+        if (type == TokenType.STRING_LITERAL || type == TokenType.CHARACTER_LITERAL) {
+            start++;
+            end--;
+        }
+
+        if (source instanceof Utf8Source utf8) {
+            // a byte view only reads as text while it is ASCII
+            Utf8Source view = utf8.subSequence(start, end);
+            for (int i = 0; i < view.length(); i++) {
+                if (view.charAt(i) >= 0x80) {
+                    return view.toString();
+                }
+            }
+            return view;
+        }
+
+        return CharBuffer.wrap(source, start, end);
+    }
+
+    /**
+     * Decodes the escape sequences of a literal body ({@code \n}, {@code \t},
+     * and escaped quotes or backslashes).
+     */
+    static String unescape(CharSequence text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\\' && i + 1 < text.length()) {
+                c = switch (text.charAt(++i)) {
+                    case 'n' -> '\n';
+                    case 't' -> '\t';
+                    default -> text.charAt(i);
+                };
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    static boolean hasValue(TokenType type) {
+        return type == TokenType.IDENTIFIER
+                || type == TokenType.NUMBER
+                || type == TokenType.STRING_LITERAL
+                || type == TokenType.CHARACTER_LITERAL
+                || type == TokenType.ERROR;
+    }
+
+    private final class TokenListView extends AbstractList<Token> implements RandomAccess {
+        @Override
+        public Token get(int index) {
+            return TokenBuffer.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
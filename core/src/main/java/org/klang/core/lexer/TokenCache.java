@@ -0,0 +1,287 @@
+package org.klang.core.lexer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Persistent cache of lexed token streams, so unchanged files are not lexed
+ * again across runs.
+ * <p>
+ * The cache is opt-in: it is used when a {@value #DIRECTORY} directory exists
+ * in the working directory or one of its parents (see {@link #find(Path)}).
+ * Each entry is one file named after the SHA-256 digest and the length of the
+ * source it was lexed from. It holds a versioned header followed by the raw
+ * {@link TokenBuffer} arrays, little-endian:
+ *
+ * <pre>
+ * int  magic 'KTOK'    int  format version   long lexer version
+ * int  source length   int  (reserved)       byte[32] source SHA-256
+ * TokenBuffer arrays (see TokenBuffer#writeTo)
+ * </pre>
+ *
+ * Entries are memory-mapped and their arrays copied in bulk on a hit. An entry
+ * whose header does not match the lexer, or the length and full digest of the
+ * source, is treated as a miss, and so is one whose arrays do not describe
+ * tokens of that source (see TokenBuffer#readFrom).
+ * <p>
+ * Only token streams without diagnostics are cached, and symbol IDs are not
+ * stored: they are only meaningful within one process.
+ * <p>
+ * The total size of the entries is bounded; when it is exceeded, the least
+ * recently used entries are deleted. A hit marks its entry as used only when
+ * it was last marked over an hour ago, so most hits do not write to the
+ * directory, and the order of eviction is accurate to about an hour. The cache is safe to share between
+ * threads and between processes: entries are written to a temporary file and
+ * moved into place.
+ */
+public final class TokenCache {
+    public static final String DIRECTORY = ".klang-cache";
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    private static final int MAGIC = 0x4B544F4B; // "KTOK"
+    private static final int FORMAT_VERSION = 2;
+    private static final int DIGEST_SIZE = 32;
+    private static final int HEADER_SIZE = 24 + DIGEST_SIZE;
+    private static final String SUFFIX = ".tok";
+    private static final long TOUCH_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Version of the token stream the lexer produces. Bump it whenever the
+     * lexer output changes for the same input; the token types are part of the
+     * version automatically.
+     */
+    private static final int LEXER_REVISION = 1;
+    static final long LEXER_VERSION = ((long) LEXER_REVISION << 32) | (tokenTypesFingerprint() & 0xFFFFFFFFL);
+
+    private final Path directory;
+    private final long maxSize;
+    private final AtomicLong size = new AtomicLong(-1); // -1 until first measured
+
+    /**
+     * @param directory Directory holding the entries (must exist)
+     * @param maxSize   Bound on the total size of the entries, in bytes
+     */
+    public TokenCache(Path directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Looks for a {@value #DIRECTORY} directory in {@code start} and its
+     * parents.
+     *
+     * @return A cache over the first directory found, or null if there is none
+     */
+    public static TokenCache find(Path start) {
+        for (Path dir = start.toAbsolutePath(); dir != null; dir = dir.getParent()) {
+            Path candidate = dir.resolve(DIRECTORY);
+            if (Files.isDirectory(candidate)) {
+                return new TokenCache(candidate, DEFAULT_MAX_SIZE);
+            }
+        }
+        return null;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Returns the cached tokens of the given source.
+     *
+     * @return The tokens, or null on a miss (or if the entry cannot be read)
+     */
+    public TokenBuffer get(CharSequence source) {
+        byte[] digest = digest(source);
+        Path entry = entryPath(digest, source.length());
+
+        try (FileChannel channel = FileChannel.open(entry, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                return null;
+            }
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            ByteBuffer in = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION || in.getLong() != LEXER_VERSION
+                    || in.getInt() != source.length()) {
+                return null;
+            }
+            in.getInt(); // reserved
+            for (byte b : digest) {
+                if (in.get() != b) {
+                    return null;
+                }
+            }
+
+            TokenBuffer tokens = TokenBuffer.readFrom(source, in);
+            if (tokens != null) {
+                touch(entry);
+            }
+            return tokens;
+        } catch (IOException | RuntimeException e) {
+            return null; // missing, truncated or foreign entry: lex again
+        }
+    }
+
+    /**
+     * Stores the tokens of the given source, evicting old entries if the cache
+     * grows past its bound. Failures are ignored: the cache is an optimization.
+     */
+    public void put(CharSequence source, TokenBuffer tokens) {
+        byte[] digest = digest(source);
+        Path entry = entryPath(digest, source.length());
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + tokens.serializedSize()).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(LEXER_VERSION)
+                .putInt(source.length()).putInt(0).put(digest);
+        tokens.writeTo(out);
+        out.flip();
+
+        try {
+            Path temp = Files.createTempFile(directory, "entry", ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+            move(temp, entry);
+        } catch (IOException e) {
+            return;
+        }
+
+        if (size.get() < 0) {
+            size.compareAndSet(-1, measure());
+        } else {
+            size.addAndGet(out.limit());
+        }
+        if (size.get() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is within three
+     * quarters of its bound.
+     */
+    private synchronized void evict() {
+        List<Path> entries = new ArrayList<>(entries());
+        entries.sort(Comparator.comparing(TokenCache::lastModified));
+
+        long total = measure();
+        for (Path entry : entries) {
+            if (total <= maxSize / 4 * 3) {
+                break;
+            }
+            long length = fileSize(entry);
+            try {
+                if (Files.deleteIfExists(entry)) {
+                    total -= length;
+                }
+            } catch (IOException e) {
+                // in use or already gone
+            }
+        }
+        size.set(total);
+    }
+
+    private long measure() {
+        return entries().stream().mapToLong(TokenCache::fileSize).sum();
+    }
+
+    private List<Path> entries() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).toList();
+        } catch (IOException e) {
+            return List.of();
+        }
+    }
+
+    private Path entryPath(byte[] digest, int length) {
+        return directory.resolve(HexFormat.of().formatHex(digest, 0, 8) + "-" + Integer.toHexString(length) + SUFFIX);
+    }
+
+    private static void move(Path temp, Path entry) throws IOException {
+        try {
+            Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Marks an entry as used, unless it was marked recently: a metadata write
+     * on every hit would cost more than the hit saves.
+     */
+    private static void touch(Path entry) {
+        try {
+            long now = System.currentTimeMillis();
+            if (now - Files.getLastModifiedTime(entry).toMillis() > TOUCH_INTERVAL) {
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(now));
+            }
+        } catch (IOException | RuntimeException e) {
+            // read-only or shared directory: only affects eviction order
+        }
+    }
+
+    private static FileTime lastModified(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static long fileSize(Path entry) {
+        try {
+            return Files.size(entry);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * SHA-256 digest of the UTF-8 bytes of the source.
+     */
+    static byte[] digest(CharSequence source) {
+        ByteBuffer bytes = source instanceof Utf8Source utf8
+                ? utf8.buffer()
+                : ByteBuffer.wrap(source.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(bytes);
+            return sha.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required of every Java platform", e);
+        }
+    }
+
+    private static int tokenTypesFingerprint() {
+        int h = 1;
+        for (TokenType type : TokenType.values()) {
+            h = 31 * h + type.name().hashCode();
+        }
+        return h;
+    }
+}
@@ -0,0 +1,183 @@
+package org.klang.core.lexer;
+
+import org.klang.core.jfr.Events;
+import org.klang.core.jfr.LexEvent;
+
+/**
+ * Pull-based cursor over the tokens of a {@link Lexer}.
+ * <p>
+ * Tokens are lexed lazily, one per {@link #advance()}, and only the current
+ * token is kept: its type and offsets are plain fields, and its value is
+ * sliced from the source only when asked for. Memory stays flat no matter how
+ * large the source is.
+ *
+ * <pre>
+ * TokenCursor cursor = lexer.cursor();
+ * while (cursor.advance()) {
+ *     handle(cursor.type(), cursor.start(), cursor.end());
+ * }
+ * </pre>
+ */
+public final class TokenCursor {
+    private final Lexer lexer;
+    private final LexEvent event = Events.recording() ? new LexEvent() : null;
+    private int count;
+    private TokenType type;
+    private int start;
+    private int end;
+    private long numberBits;
+    private boolean numberDecimal;
+    private boolean escapes;
+
+    TokenCursor(Lexer lexer) {
+        this.lexer = lexer;
+        if (event != null) {
+            event.begin();
+        }
+    }
+
+    /**
+     * Moves to the next token.
+     * 
+     * @return true if positioned on a token, false once EOF has been passed
+     */
+    public boolean advance() {
+        if (!lexer.hasNext()) {
+            type = null;
+            return false;
+        }
+
+        type = lexer.scanToken();
+        start = lexer.tokenStart;
+        end = lexer.position;
+        if (type == TokenType.NUMBER) {
+            numberBits = lexer.numberBits;
+            numberDecimal = lexer.numberDecimal;
+        }
+        escapes = (type == TokenType.STRING_LITERAL || type == TokenType.CHARACTER_LITERAL)
+                && lexer.literalEscapes;
+
+        count++;
+        if (type == TokenType.EOF && event != null) {
+            event.finish(lexer.filePath, lexer.source.length(), count, lexer.recoveries);
+        }
+        return true;
+    }
+
+    /**
+     * @return Type of the current token
+     */
+    public TokenType type() {
+        checkPositioned();
+        return type;
+    }
+
+    /**
+     * @return Offset of the first character of the current token
+     */
+    public int start() {
+        checkPositioned();
+        return start;
+    }
+
+    /**
+     * @return Offset one past the last character of the current token
+     */
+    public int end() {
+        checkPositioned();
+        return end;
+    }
+
+    /**
+     * Slices the value of the current token out of the source.
+     * 
+     * @return The token value, or null for tokens without a value
+     */
+    public String value() {
+        checkPositioned();
+        return TokenBuffer.valueOf(lexer.source, type, start, end);
+    }
+
+    /**
+     * Returns the value of the current token as a view of the source, without
+     * copying it. Literals keep their escape sequences as written.
+     *
+     * @return The token text, or null for tokens without a value
+     */
+    public CharSequence text() {
+        checkPositioned();
+        return TokenBuffer.textOf(lexer.source, type, start, end);
+    }
+
+    /**
+     * @return Value of the current STRING_LITERAL or CHARACTER_LITERAL, with
+     *         escape sequences decoded
+     */
+    public String literal() {
+        checkPositioned();
+        if (type != TokenType.STRING_LITERAL && type != TokenType.CHARACTER_LITERAL) {
+            throw new IllegalStateException("Cursor is not positioned on a literal: " + type);
+        }
+
+        CharSequence text = text();
+        return escapes ? TokenBuffer.unescape(text) : text.toString();
+    }
+
+    /**
+     * @return Whether the current NUMBER is a decimal literal
+     */
+    public boolean isDecimal() {
+        checkNumber();
+        return numberDecimal;
+    }
+
+    /**
+     * @return Value of the current NUMBER, parsed by the lexer (decimals are
+     *         truncated)
+     */
+    public long longValue() {
+        checkNumber();
+        return numberDecimal ? (long) Double.longBitsToDouble(numberBits) : numberBits;
+    }
+
+    /**
+     * @return Value of the current NUMBER, parsed by the lexer
+     */
+    public double doubleValue() {
+        checkNumber();
+        return numberDecimal ? Double.longBitsToDouble(numberBits) : numberBits;
+    }
+
+    /**
+     * Interns the current identifier into the lexer's {@link SymbolTable}.
+     * 
+     * @return The symbol ID, or {@link TokenBuffer#NO_SYMBOL} if the token is
+     *         not an identifier or the lexer has no symbol table
+     */
+    public int symbol() {
+        checkPositioned();
+        if (lexer.symbols == null || type != TokenType.IDENTIFIER) {
+            return TokenBuffer.NO_SYMBOL;
+        }
+        return lexer.symbols.intern(lexer.source, start, end);
+    }
+
+    /**
+     * Materializes the current token.
+     */
+    public Token token() {
+        return new Token(type(), value(), start, end, symbol());
+    }
+
+    private void checkNumber() {
+        if (type() != TokenType.NUMBER) {
+            throw new IllegalStateException("Cursor is not positioned on a NUMBER: " + type);
+        }
+    }
+
+    private void checkPositioned() {
+        if (type == null) {
+            throw new IllegalStateException("Cursor is not positioned on a token");
+        }
+    }
+}
@@ -23,5 +23,5 @@ public enum TokenType {
     CHARACTER_LITERAL, CHARACTER_TYPE, STRING_LITERAL, STRING_TYPE, VOID, FRESH,
 
     // Especial
-    AT, EOF
+    AT, ERROR, EOF
 }
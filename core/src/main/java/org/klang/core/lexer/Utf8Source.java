@@ -0,0 +1,179 @@
+package org.klang.core.lexer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * UTF-8 encoded source viewed as a sequence of bytes.
+ * <p>
+ * Indices are byte offsets and {@link #charAt(int)} returns the raw byte
+ * (0-255) without decoding, so the lexer can scan ASCII punctuation, keywords
+ * and numbers directly over the encoded input. Multi-byte sequences are only
+ * decoded on request, through {@link #codePointAt(int)} or when a slice is
+ * turned into a {@link String}.
+ */
+public final class Utf8Source implements CharSequence {
+    // smallest code point that may be encoded with a given number of bytes
+    private static final int[] MIN_VALUE_FOR_WIDTH = { 0, 0, 0x80, 0x800, 0x10000 };
+
+    private final ByteBuffer bytes;
+    private final int offset;
+    private final int length;
+
+    private Utf8Source(ByteBuffer bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Memory-maps a file read-only. The file is not read nor decoded up front.
+     *
+     * @param path File to map
+     * @return A source backed by the mapped file
+     * @throws IOException if the file cannot be mapped
+     */
+    public static Utf8Source map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to lex: " + path + " (" + size + " bytes)");
+            }
+
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new Utf8Source(mapped, 0, (int) size);
+        }
+    }
+
+    /**
+     * Wraps UTF-8 encoded bytes without copying them.
+     */
+    public static Utf8Source wrap(byte[] utf8) {
+        return new Utf8Source(ByteBuffer.wrap(utf8), 0, utf8.length);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the byte at the given offset, zero-extended to a char.
+     */
+    @Override
+    public char charAt(int index) {
+        return (char) (bytes.get(offset + Objects.checkIndex(index, length)) & 0xFF);
+    }
+
+    /**
+     * Returns a view over a byte range of this source. Nothing is copied.
+     */
+    @Override
+    public Utf8Source subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, length);
+        return new Utf8Source(bytes, offset + start, end - start);
+    }
+
+    /**
+     * Decodes the code point starting at the given byte offset.
+     *
+     * @return The code point, or -1 if the bytes are not well-formed UTF-8
+     */
+    public int codePointAt(int index) {
+        int lead = charAt(index);
+        int width = sequenceLength(lead);
+        if (width == 1) {
+            return lead;
+        }
+
+        if (width == 0 || index + width > length) {
+            return -1;
+        }
+
+        int cp = lead & (0xFF >> (width + 1));
+        for (int i = 1; i < width; i++) {
+            int b = charAt(index + i);
+            if ((b & 0xC0) != 0x80) {
+                return -1;
+            }
+
+            cp = (cp << 6) | (b & 0x3F);
+        }
+
+        // reject overlong encodings and surrogates
+        if (cp < MIN_VALUE_FOR_WIDTH[width] || (cp >= 0xD800 && cp <= 0xDFFF) || cp > Character.MAX_CODE_POINT) {
+            return -1;
+        }
+
+        return cp;
+    }
+
+    /**
+     * Number of bytes of the UTF-8 sequence introduced by the given lead byte.
+     *
+     * @return 1 to 4, or 0 if the byte cannot start a sequence
+     */
+    public static int sequenceLength(int lead) {
+        if (lead < 0x80) {
+            return 1;
+        }
+        if (lead < 0xC2) {
+            return 0; // continuation byte or overlong lead
+        }
+        if (lead < 0xE0) {
+            return 2;
+        }
+        if (lead < 0xF0) {
+            return 3;
+        }
+        if (lead < 0xF5) {
+            return 4;
+        }
+        return 0;
+    }
+
+    /**
+     * @return The array backing this source, or null if it is memory-mapped
+     */
+    byte[] array() {
+        return bytes.hasArray() ? bytes.array() : null;
+    }
+
+    /**
+     * @return Index in {@link #array()} of offset 0 of this source
+     */
+    int arrayOffset() {
+        return bytes.arrayOffset() + offset;
+    }
+
+    /**
+     * @return A little-endian view of the bytes of this source
+     */
+    ByteBuffer buffer() {
+        return bytes.slice(offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Copies {@code length} bytes starting at {@code index} into {@code dst}.
+     */
+    void copy(int index, byte[] dst, int length) {
+        Objects.checkFromIndexSize(index, length, this.length);
+        bytes.get(offset + index, dst, 0, length);
+    }
+
+    /**
+     * Decodes this source (or slice) into a {@link String}.
+     */
+    @Override
+    public String toString() {
+        byte[] copy = new byte[length];
+        bytes.get(offset, copy, 0, length);
+        return new String(copy, StandardCharsets.UTF_8);
+    }
+}
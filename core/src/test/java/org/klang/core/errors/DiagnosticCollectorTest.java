@@ -0,0 +1,203 @@
+package org.klang.core.errors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link DiagnosticCollector#concurrent()} collector loses no
+ * diagnostic when threads report at once, counts them exactly, and returns
+ * them in an order that does not depend on how the threads were scheduled.
+ */
+class DiagnosticCollectorTest {
+    private static final int THREADS = 8;
+    private static final int PER_THREAD = 20_000;
+
+    @Test
+    void concurrentReportsAreAllCounted() throws Exception {
+        DiagnosticCollector collector = DiagnosticCollector.concurrent();
+        List<List<Diagnostic>> work = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            List<Diagnostic> own = new ArrayList<>();
+            for (int i = 0; i < PER_THREAD; i++) {
+                DiagnosticType type = i % 3 == 0 ? DiagnosticType.WARNING : DiagnosticType.LEXICAL;
+                own.add(diagnostic(type, "t" + t + "-" + i, "f" + (i % 4) + ".k", 1 + i % 500, 1 + t));
+            }
+            work.add(own);
+        }
+
+        reportConcurrently(collector, work);
+
+        List<Diagnostic> all = collector.all();
+        assertEquals(THREADS * PER_THREAD, all.size());
+
+        Set<String> messages = new HashSet<>();
+        for (Diagnostic d : all) {
+            messages.add(d.message);
+        }
+        assertEquals(THREADS * PER_THREAD, messages.size(), "a diagnostic was lost or duplicated");
+
+        int warnings = THREADS * ((PER_THREAD + 2) / 3);
+        assertEquals(warnings, collector.count(DiagnosticType.WARNING));
+        assertEquals(THREADS * PER_THREAD - warnings, collector.count(DiagnosticType.LEXICAL));
+        assertEquals(0, collector.count(DiagnosticType.SYNTAX));
+        assertTrue(collector.hasErrors());
+    }
+
+    @Test
+    void concurrentOrderDoesNotDependOnScheduling() throws Exception {
+        List<Diagnostic> input = new ArrayList<>();
+        Random random = new Random(42);
+        DiagnosticType[] types = { DiagnosticType.LEXICAL, DiagnosticType.WARNING, DiagnosticType.SYNTAX };
+        for (int i = 0; i < THREADS * 2_000; i++) {
+            // few distinct positions, so many diagnostics share one and the tie-break matters
+            input.add(diagnostic(types[random.nextInt(types.length)], "m" + random.nextInt(20),
+                    "f" + random.nextInt(3) + ".k", 1 + random.nextInt(40), 1 + random.nextInt(5)));
+        }
+        input.add(diagnostic(DiagnosticType.ERROR, "no position", null, 0, 0));
+
+        List<String> expected = null;
+        for (int run = 0; run < 5; run++) {
+            // a different split of the same diagnostics between the threads each run
+            List<Diagnostic> shuffled = new ArrayList<>(input);
+            Collections.shuffle(shuffled, new Random(run));
+            List<List<Diagnostic>> work = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                work.add(new ArrayList<>());
+            }
+            for (int i = 0; i < shuffled.size(); i++) {
+                work.get(i % THREADS).add(shuffled.get(i));
+            }
+
+            DiagnosticCollector collector = DiagnosticCollector.concurrent();
+            reportConcurrently(collector, work);
+
+            List<String> keys = keys(collector.all());
+            assertEquals(keys, keys(collector.sorted()));
+            if (expected == null) {
+                expected = keys;
+                assertEquals(input.size(), keys.size());
+                assertTrue(keys.get(0).startsWith("null"), "diagnostics without a file come first");
+                assertPositionOrder(collector.all());
+            } else {
+                assertEquals(expected, keys, "order changed between runs");
+            }
+        }
+    }
+
+    @Test
+    void concurrentSnapshotsWhileReporting() throws Exception {
+        DiagnosticCollector collector = DiagnosticCollector.concurrent();
+        CountDownLatch done = new CountDownLatch(THREADS);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            Future<Integer> reader = pool.submit(() -> {
+                int last = 0;
+                while (done.getCount() > 0) {
+                    List<Diagnostic> snapshot = collector.all();
+                    assertTrue(snapshot.size() >= last, "a snapshot lost diagnostics");
+                    for (Diagnostic d : snapshot) {
+                        assertTrue(d != null, "a snapshot saw an unpublished slot");
+                    }
+                    last = snapshot.size();
+                }
+                return last;
+            });
+            for (int t = 0; t < THREADS; t++) {
+                int id = t;
+                pool.submit(() -> {
+                    for (int i = 0; i < PER_THREAD; i++) {
+                        collector.report(diagnostic(DiagnosticType.LEXICAL, "t" + id + "-" + i, "a.k", 1 + i, 1));
+                    }
+                    done.countDown();
+                });
+            }
+
+            assertTrue(done.await(1, TimeUnit.MINUTES));
+            reader.get(1, TimeUnit.MINUTES);
+            assertEquals(THREADS * PER_THREAD, collector.all().size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void plainCollectorKeepsReportOrder() {
+        DiagnosticCollector collector = new DiagnosticCollector();
+        collector.report(diagnostic(DiagnosticType.WARNING, "second", "b.k", 2, 1));
+        assertFalse(collector.hasErrors(), "a warning is not an error");
+
+        collector.report(diagnostic(DiagnosticType.LEXICAL, "first", "a.k", 1, 1));
+        assertTrue(collector.hasErrors());
+        assertEquals(List.of("second", "first"), collector.all().stream().map(d -> d.message).toList());
+        assertEquals(List.of("first", "second"), collector.sorted().stream().map(d -> d.message).toList());
+    }
+
+    /**
+     * Reports each list from a thread of its own, all released at once.
+     */
+    private static void reportConcurrently(DiagnosticCollector collector, List<List<Diagnostic>> work)
+            throws Exception {
+        CyclicBarrier start = new CyclicBarrier(work.size());
+        ExecutorService pool = Executors.newFixedThreadPool(work.size());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<Diagnostic> own : work) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (Diagnostic d : own) {
+                        collector.report(d);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void assertPositionOrder(List<Diagnostic> diagnostics) {
+        for (int i = 1; i < diagnostics.size(); i++) {
+            Span a = diagnostics.get(i - 1).primarySpan;
+            Span b = diagnostics.get(i).primarySpan;
+            if (a == null || b == null) {
+                assertTrue(b != null || a == null, "diagnostics without a file come first");
+                continue;
+            }
+            int byFile = a.fileName.compareTo(b.fileName);
+            assertTrue(byFile < 0 || byFile == 0 && (a.startLine < b.startLine
+                    || a.startLine == b.startLine && a.startColumn <= b.startColumn),
+                    "out of order: " + a + " before " + b);
+        }
+    }
+
+    private static List<String> keys(List<Diagnostic> diagnostics) {
+        return diagnostics.stream().map(d -> d.primarySpan + " " + d.type + " " + d.message).toList();
+    }
+
+    private static Diagnostic diagnostic(DiagnosticType type, String message, String file, int line, int column) {
+        Diagnostic.Builder builder = Diagnostic.builder(type, message);
+        if (file != null) {
+            builder.primary(new Span(file, line, column, line, column + 1));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,129 @@
+package org.klang.core.lexer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.klang.core.errors.DiagnosticCollector;
+
+/**
+ * Checks that {@link IncrementalLexer#relex} gives the same tokens as lexing
+ * the edited source from scratch: the tokens it keeps before the edit, the
+ * ones it lexes again and the ones after the resync point, shifted by the
+ * size of the edit.
+ */
+class IncrementalLexerTest {
+    private static final String[] SNIPPETS = {
+            "/*", "*/", "\"", "'", "//", "\n", " ", "x", "abc", "123", "1.5", "\\", ";", "(", ")", "=", "+",
+            "integer", "\"s\"", "'c'", "/* c */", "$",
+    };
+
+    private static final String PROGRAM = """
+            integer x = 1_000;
+            /* a comment
+               over two lines */
+            string s = "a \\"quoted\\" word";
+            character c = '\\n';
+            // a line comment
+            double d = 2.5 * (x + 3);
+            println(s + c + d);
+            """;
+
+    @Test
+    void openingCommentSwallowsFollowingTokens() {
+        assertEdit(PROGRAM, PROGRAM.indexOf("string"), 0, "/*");
+    }
+
+    @Test
+    void closingCommentEarlyExposesTokens() {
+        assertEdit(PROGRAM, PROGRAM.indexOf("over"), 0, "*/");
+    }
+
+    @Test
+    void removingCommentEndExtendsComment() {
+        assertEdit(PROGRAM, PROGRAM.indexOf("*/"), 2, "");
+    }
+
+    @Test
+    void openingStringSwallowsRestOfLine() {
+        assertEdit(PROGRAM, PROGRAM.indexOf("x + 3"), 0, "\"");
+    }
+
+    @Test
+    void closingStringEarly() {
+        assertEdit(PROGRAM, PROGRAM.indexOf("quoted"), 0, "\" + \"");
+    }
+
+    @Test
+    void editInsideTokenShiftsLaterTokens() {
+        assertEdit(PROGRAM, PROGRAM.indexOf("1_000") + 1, 0, "234");
+        assertEdit(PROGRAM, PROGRAM.indexOf("1_000"), 5, "7");
+    }
+
+    @Test
+    void editsAtBothEnds() {
+        assertEdit(PROGRAM, 0, 0, "integer y;");
+        assertEdit(PROGRAM, PROGRAM.length(), 0, "x");
+        assertEdit(PROGRAM, 0, PROGRAM.length(), "");
+        assertEdit("", 0, 0, PROGRAM);
+    }
+
+    @Test
+    void randomEditsMatchFullLex() {
+        for (int seed = 0; seed < 20; seed++) {
+            Random random = new Random(seed);
+            String source = PROGRAM.repeat(3);
+            TokenBuffer tokens = fullLex(source);
+
+            for (int edit = 0; edit < 200; edit++) {
+                int offset = random.nextInt(source.length() + 1);
+                int removed = random.nextInt(4) == 0 ? random.nextInt(Math.min(12, source.length() - offset) + 1) : 0;
+                String inserted = random.nextInt(4) == 0 ? "" : SNIPPETS[random.nextInt(SNIPPETS.length)];
+                if (removed == 0 && inserted.isEmpty()) {
+                    inserted = "x";
+                }
+                String edited = source.substring(0, offset) + inserted + source.substring(offset + removed);
+
+                // each edit starts from the previous relex, so errors would accumulate
+                TokenBuffer relexed = IncrementalLexer.relex(tokens, null, offset, removed, inserted);
+                String context = "seed " + seed + ", edit " + edit + ": " + offset + " -" + removed + " +"
+                        + inserted.replace("\n", "\\n");
+                assertSameTokens(fullLex(edited), relexed, context);
+
+                source = edited;
+                tokens = relexed;
+            }
+        }
+    }
+
+    private static void assertEdit(String source, int offset, int removed, String inserted) {
+        String edited = source.substring(0, offset) + inserted + source.substring(offset + removed);
+        TokenBuffer relexed = IncrementalLexer.relex(fullLex(source), null, offset, removed, inserted);
+        assertSameTokens(fullLex(edited), relexed, offset + " -" + removed + " +" + inserted);
+    }
+
+    private static TokenBuffer fullLex(String source) {
+        return new Lexer(source, null, new DiagnosticCollector()).tokenizeToBuffer();
+    }
+
+    private static void assertSameTokens(TokenBuffer expected, TokenBuffer actual, String context) {
+        assertEquals(expected.source().toString(), actual.source().toString(), context);
+        assertEquals(describe(expected), describe(actual), context);
+    }
+
+    private static String describe(TokenBuffer tokens) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < tokens.size(); i++) {
+            out.append(tokens.type(i)).append('@').append(tokens.start(i)).append('-').append(tokens.end(i));
+            TokenType type = tokens.type(i);
+            if (type == TokenType.NUMBER) {
+                out.append('=').append(tokens.isDecimal(i) ? tokens.doubleValue(i) : tokens.longValue(i));
+            } else if (type == TokenType.STRING_LITERAL || type == TokenType.CHARACTER_LITERAL) {
+                out.append('=').append(tokens.literal(i));
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+}
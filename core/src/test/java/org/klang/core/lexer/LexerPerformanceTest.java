@@ -0,0 +1,211 @@
+package org.klang.core.lexer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.Random;
+import java.util.function.ToIntFunction;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.klang.core.errors.DiagnosticCollector;
+
+/**
+ * Guards the lexer against performance regressions: lexes a deterministic
+ * synthetic corpus and fails when the bytes allocated per token or the
+ * throughput (relative to a plain scan of the same source, so the check holds
+ * on any machine) drift past the budget in {@value #BUDGET}.
+ * <p>
+ * Allocation is read from {@link com.sun.management.ThreadMXBean}; the tests
+ * are skipped on JVMs that do not support it.
+ * <p>
+ * UTF-8 sources go through the scanner selected by
+ * {@code -Dklang.lexer.simd}: {@code test} runs the scalar one and
+ * {@code simdTest} the SIMD one, against the same budget.
+ */
+class LexerPerformanceTest {
+    private static final String BUDGET = "/lexer-budget.properties";
+    private static final int CORPUS_SIZE = 1024 * 1024;
+    private static final int WARMUP_RUNS = 100;
+    private static final int MEASURED_RUNS = 10;
+    private static final int TIMED_RUNS = 30;
+    private static final int SCANS_PER_RUN = 16; // so a scan run takes about as long as a lex run
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static Properties budget;
+    private static String text;
+    private static Utf8Source utf8;
+    private static int tokenCount;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        budget = new Properties();
+        try (InputStream in = LexerPerformanceTest.class.getResourceAsStream(BUDGET)) {
+            budget.load(in);
+        }
+
+        text = corpus(CORPUS_SIZE);
+        utf8 = Utf8Source.wrap(text.getBytes(StandardCharsets.UTF_8));
+        tokenCount = new Lexer(text, null).tokenizeToBuffer().size();
+    }
+
+    @Test
+    void corpusIsLexedWithoutDiagnostics() {
+        DiagnosticCollector diagnostics = new DiagnosticCollector();
+        new Lexer(text, null, diagnostics).tokenizeToBuffer();
+        assertTrue(diagnostics.all().isEmpty(), "corpus has diagnostics: " + diagnostics.all());
+        assertTrue(tokenCount > CORPUS_SIZE / 10, "corpus too sparse: " + tokenCount + " tokens");
+    }
+
+    @Test
+    void scannerMatchesProperty() {
+        // a SIMD run that silently fell back to the scalar scanner would check nothing new
+        assertEquals(Boolean.getBoolean(SourceScanner.SIMD_PROPERTY), SourceScanner.isVectorized());
+    }
+
+    @Test
+    void cursorAllocationPerToken() {
+        assumeTrue(THREADS.isThreadAllocatedMemorySupported(), "allocation measurement unsupported");
+
+        assertWithinBudget("alloc.cursor.bytesPerToken", bytesPerToken(text, LexerPerformanceTest::drain));
+        assertWithinBudget("alloc.cursor.bytesPerToken", bytesPerToken(utf8, LexerPerformanceTest::drain));
+    }
+
+    @Test
+    void bufferAllocationPerToken() {
+        assumeTrue(THREADS.isThreadAllocatedMemorySupported(), "allocation measurement unsupported");
+
+        ToIntFunction<CharSequence> lex = source -> new Lexer(source, null).tokenizeToBuffer().size();
+        assertWithinBudget("alloc.buffer.bytesPerToken", bytesPerToken(text, lex));
+        assertWithinBudget("alloc.buffer.bytesPerToken", bytesPerToken(utf8, lex));
+    }
+
+    @Test
+    void throughputRelativeToScan() {
+        assertWithinBudget("throughput.string.maxSlowdown", slowdown(text));
+        assertWithinBudget("throughput.utf8.maxSlowdown", slowdown(utf8));
+    }
+
+    /**
+     * Lexing time over the time of a plain scan of the same source, the best
+     * of several runs.
+     */
+    private static double slowdown(CharSequence source) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            scan(source);
+            drain(source);
+        }
+
+        // Interleaved, and over similar durations, so that both see the same
+        // load and are equally likely to lose the CPU to another process
+        long scan = Long.MAX_VALUE;
+        long lex = Long.MAX_VALUE;
+        int sink = 0;
+        for (int i = 0; i < TIMED_RUNS; i++) {
+            long start = System.nanoTime();
+            for (int j = 0; j < SCANS_PER_RUN; j++) {
+                sink += scan(source);
+            }
+            long middle = System.nanoTime();
+            sink += drain(source);
+            long end = System.nanoTime();
+
+            scan = Math.min(scan, (middle - start) / SCANS_PER_RUN);
+            lex = Math.min(lex, end - middle);
+        }
+        assertTrue(sink != Integer.MIN_VALUE); // keeps the work alive
+        return (double) lex / Math.max(scan, 1);
+    }
+
+    /**
+     * Lexes with a cursor, the allocation-free path.
+     */
+    private static int drain(CharSequence source) {
+        TokenCursor cursor = new Lexer(source, null).cursor();
+        int count = 0;
+        while (cursor.advance()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * The baseline: touches every char once.
+     */
+    private static int scan(CharSequence source) {
+        int sum = 0;
+        for (int i = 0; i < source.length(); i++) {
+            sum += source.charAt(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Bytes allocated by the current thread per token, the lowest of a few
+     * runs after warm-up (so a stray allocation by the JIT does not count).
+     */
+    private static double bytesPerToken(CharSequence source, ToIntFunction<CharSequence> lex) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            assertEquals(tokenCount, lex.applyAsInt(source));
+        }
+
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            lex.applyAsInt(source);
+            best = Math.min(best, THREADS.getCurrentThreadAllocatedBytes() - before);
+        }
+        return (double) best / tokenCount;
+    }
+
+    private static void assertWithinBudget(String key, double measured) {
+        String value = budget.getProperty(key);
+        assertTrue(value != null, "no budget for " + key + " in " + BUDGET);
+
+        double limit = Double.parseDouble(value);
+        assertTrue(measured <= limit,
+                String.format("%s: measured %.2f, budget %s (see %s)", key, measured, value, BUDGET));
+    }
+
+    /**
+     * Generates a source of roughly {@code size} chars mixing declarations,
+     * operators, comments, strings and numbers. The same size always yields
+     * the same text.
+     */
+    private static String corpus(int size) {
+        String[] words = { "value", "count", "index", "buffer", "result", "total", "offset", "_tmp", "$ctx" };
+        String[] types = { "integer", "double", "boolean", "character", "String" };
+        String[] operators = { "+", "-", "*", "/", "%", "**", "==", "!=", "<", "<=", ">", ">=", "&&", "||" };
+
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(size + 256);
+        while (sb.length() < size) {
+            String word = words[random.nextInt(words.length)];
+            switch (random.nextInt(5)) {
+                case 0 -> sb.append("    ").append(types[random.nextInt(types.length)]).append(' ').append(word)
+                        .append(" = ").append(word).append("(a, b);");
+                case 1 -> {
+                    sb.append("    x = (a");
+                    for (int i = 0; i < 6; i++) {
+                        sb.append(' ').append(operators[random.nextInt(operators.length)]).append(" b").append(i);
+                    }
+                    sb.append(");");
+                }
+                case 2 -> sb.append("    // ").append(word).append(" is updated after every step");
+                case 3 -> sb.append("    String s = \"").append(word).append(" \\t escaped\"; character c = 'q';");
+                default -> sb.append("    ").append(random.nextInt(1_000_000)).append(", ")
+                        .append(random.nextInt(1000)).append('.').append(random.nextInt(100_000)).append(';');
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
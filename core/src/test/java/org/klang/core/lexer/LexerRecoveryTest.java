@@ -0,0 +1,75 @@
+package org.klang.core.lexer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.klang.core.errors.DiagnosticCollector;
+
+/**
+ * Checks where the lexer resumes after an error in recovery mode: a bad
+ * literal, number or identifier is skipped whole, while a stray character is
+ * skipped alone, so the tokens after it are kept. Every source is lexed both
+ * as a String and as UTF-8 bytes.
+ */
+class LexerRecoveryTest {
+
+    @Test
+    void strayAmpersandKeepsFollowingIdentifier() {
+        assertTokens("x = a &b;", 1,
+                "IDENTIFIER(x)", "ASSIGNMENT(=)", "IDENTIFIER(a)", "ERROR(&)", "IDENTIFIER(b)", "SEMICOLON(;)");
+    }
+
+    @Test
+    void strayPipeKeepsFollowingIdentifier() {
+        assertTokens("a |c", 1, "IDENTIFIER(a)", "ERROR(|)", "IDENTIFIER(c)");
+    }
+
+    @Test
+    void strayHashKeepsFollowingIdentifier() {
+        assertTokens("#foo", 1, "ERROR(#)", "IDENTIFIER(foo)");
+    }
+
+    @Test
+    void byteOrderMarkKeepsFollowingKeyword() {
+        assertTokens("\uFEFFinteger x;", 1, "ERROR(\uFEFF)", "INTEGER(integer)", "IDENTIFIER(x)", "SEMICOLON(;)");
+    }
+
+    @Test
+    void loneDollarKeepsFollowingNumber() {
+        assertTokens("$1", 1, "ERROR($)", "NUMBER(1)");
+    }
+
+    @Test
+    void badNumberIsSkippedWhole() {
+        assertTokens("12abc + 1", 1, "ERROR(12abc)", "PLUS(+)", "NUMBER(1)");
+    }
+
+    @Test
+    void badLiteralIsSkippedToItsClosingQuote() {
+        assertTokens("s = \"a \\q b\"; c", 1,
+                "IDENTIFIER(s)", "ASSIGNMENT(=)", "ERROR(\"a \\q b\")", "SEMICOLON(;)", "IDENTIFIER(c)");
+    }
+
+    private static void assertTokens(String source, int errors, String... expected) {
+        assertStream(source, errors, List.of(expected));
+        assertStream(Utf8Source.wrap(source.getBytes(StandardCharsets.UTF_8)), errors, List.of(expected));
+    }
+
+    private static void assertStream(CharSequence source, int errors, List<String> expected) {
+        DiagnosticCollector diagnostics = new DiagnosticCollector();
+        TokenBuffer tokens = new Lexer(source, null, diagnostics).tokenizeToBuffer();
+
+        List<String> actual = new ArrayList<>();
+        for (int i = 0; i < tokens.size() - 1; i++) { // without EOF
+            actual.add(tokens.type(i) + "(" + source.subSequence(tokens.start(i), tokens.end(i)) + ")");
+        }
+        String mode = source instanceof Utf8Source ? "UTF-8" : "String";
+        assertEquals(expected, actual, mode);
+        assertEquals(TokenType.EOF, tokens.type(tokens.size() - 1));
+        assertEquals(errors, diagnostics.all().size(), mode + ": " + diagnostics.all());
+    }
+}
@@ -0,0 +1,103 @@
+package org.klang.core.lexer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that string and character literals are kept as views of the source,
+ * flagged when they contain escapes, and only decoded by {@code literal()}.
+ * The buffer, the cursor and UTF-8 sources must agree.
+ */
+class LiteralEscapeTest {
+    private static final String SOURCE = """
+            s = "plain"; t = "a\\tb\\nc"; q = "say \\"hi\\" \\\\ done"; u = "ünï";
+            c = 'x'; n = '\\n'; a = '\\''; b = '\\\\'; e = "é\\t";
+            """;
+
+    private static final List<String> RAW = List.of(
+            "plain", "a\\tb\\nc", "say \\\"hi\\\" \\\\ done", "ünï", "x", "\\n", "\\'", "\\\\", "é\\t");
+    private static final List<String> DECODED = List.of(
+            "plain", "a\tb\nc", "say \"hi\" \\ done", "ünï", "x", "\n", "'", "\\", "é\t");
+    private static final List<Boolean> ESCAPES = List.of(
+            false, true, true, false, false, true, true, true, true);
+
+    @Test
+    void bufferFlagsAndDecodesEscapes() {
+        for (CharSequence source : sources()) {
+            TokenBuffer tokens = new Lexer(source, null).tokenizeToBuffer();
+            List<Integer> literals = literals(tokens);
+            assertEquals(RAW.size(), literals.size());
+
+            for (int n = 0; n < literals.size(); n++) {
+                int i = literals.get(n);
+                assertEquals(ESCAPES.get(n), tokens.hasEscapes(i), RAW.get(n));
+                assertEquals(RAW.get(n), tokens.text(i).toString());
+                assertEquals(RAW.get(n), tokens.value(i), "value() keeps escapes as written");
+                assertEquals(DECODED.get(n), tokens.literal(i));
+            }
+        }
+    }
+
+    @Test
+    void cursorDecodesLikeBuffer() {
+        for (CharSequence source : sources()) {
+            TokenCursor cursor = new Lexer(source, null).cursor();
+            List<String> raw = new ArrayList<>();
+            List<String> decoded = new ArrayList<>();
+            while (cursor.advance()) {
+                if (cursor.type() == TokenType.STRING_LITERAL || cursor.type() == TokenType.CHARACTER_LITERAL) {
+                    raw.add(cursor.text().toString());
+                    decoded.add(cursor.literal());
+                }
+            }
+            assertEquals(RAW, raw);
+            assertEquals(DECODED, decoded);
+        }
+    }
+
+    @Test
+    void textIsViewOfSource() {
+        TokenBuffer tokens = new Lexer(SOURCE, null).tokenizeToBuffer();
+        for (int i : literals(tokens)) {
+            assertFalse(tokens.text(i) instanceof String, "a String source is not copied");
+        }
+
+        Utf8Source bytes = Utf8Source.wrap(SOURCE.getBytes(StandardCharsets.UTF_8));
+        tokens = new Lexer(bytes, null).tokenizeToBuffer();
+        int plain = literals(tokens).get(0);
+        assertTrue(tokens.text(plain) instanceof Utf8Source, "ASCII bytes are not decoded");
+    }
+
+    @Test
+    void literalOfOtherTokensIsRejected() {
+        TokenBuffer tokens = new Lexer("x = 1;", null).tokenizeToBuffer();
+        assertThrows(IllegalArgumentException.class, () -> tokens.literal(0));
+        assertFalse(tokens.hasEscapes(0));
+
+        TokenCursor cursor = new Lexer("x", null).cursor();
+        assertTrue(cursor.advance());
+        assertThrows(IllegalStateException.class, cursor::literal);
+    }
+
+    private static List<Integer> literals(TokenBuffer tokens) {
+        List<Integer> literals = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.type(i) == TokenType.STRING_LITERAL || tokens.type(i) == TokenType.CHARACTER_LITERAL) {
+                literals.add(i);
+            }
+        }
+        return literals;
+    }
+
+    private static List<CharSequence> sources() {
+        return List.of(SOURCE, Utf8Source.wrap(SOURCE.getBytes(StandardCharsets.UTF_8)));
+    }
+}
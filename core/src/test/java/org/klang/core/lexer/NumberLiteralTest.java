@@ -0,0 +1,159 @@
+package org.klang.core.lexer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.klang.core.errors.Diagnostic;
+import org.klang.core.errors.DiagnosticCollector;
+import org.klang.core.errors.DiagnosticException;
+
+/**
+ * Checks the values the lexer parses into the numeric side arrays: exact
+ * integers up to {@link Long#MAX_VALUE}, correctly rounded decimals on both
+ * the fast and the slow path, digit separators, and the diagnostics for
+ * literals that do not fit. The buffer, the cursor and UTF-8 sources must
+ * agree.
+ */
+class NumberLiteralTest {
+
+    @Test
+    void integers() {
+        assertInteger("0", 0);
+        assertInteger("42", 42);
+        assertInteger("1_000", 1_000);
+        assertInteger("007", 7);
+        assertInteger("9223372036854775807", Long.MAX_VALUE);
+        assertInteger("9_223372036854775807", Long.MAX_VALUE);
+    }
+
+    @Test
+    void nonAsciiDigits() {
+        TokenBuffer tokens = new Lexer("٣٤", null).tokenizeToBuffer(); // Arabic-Indic 34
+        assertEquals(TokenType.NUMBER, tokens.type(0));
+        assertEquals(34, tokens.longValue(0));
+    }
+
+    @Test
+    void decimals() {
+        assertDecimal("0.5", 0.5);
+        assertDecimal("2.5", 2.5);
+        assertDecimal("0.1", 0.1);
+        assertDecimal("1.2_5", 1.25); // the grammar takes the separator after the fraction
+        assertDecimal("3.0000000000000000000001", 3.0000000000000000000001); // 22 fraction digits
+        assertDecimal("3.14159265358979323846264338327950288", Math.PI); // more than 53 bits
+        assertDecimal("123456789012345678901234567890.5", 123456789012345678901234567890.5); // mantissa overflows
+        assertDecimal("9007199254740993.0", 9007199254740992.0); // 2^53 + 1 rounds to even
+        assertDecimal("0.0000000000000000000000000001", 1e-28);
+    }
+
+    @Test
+    void decimalsRoundLikeParseDouble() {
+        Random random = new Random(13);
+        for (int i = 0; i < 20_000; i++) {
+            String whole = Long.toString(random.nextLong() >>> (1 + random.nextInt(63)));
+            StringBuilder fraction = new StringBuilder();
+            int digits = 1 + random.nextInt(random.nextBoolean() ? 8 : 30);
+            for (int d = 0; d < digits; d++) {
+                fraction.append((char) ('0' + random.nextInt(10)));
+            }
+            String text = whole + "." + fraction;
+            assertDecimal(text, Double.parseDouble(text));
+        }
+    }
+
+    @Test
+    void longValueTruncatesDecimals() {
+        TokenBuffer tokens = lex("2.9 7.0");
+        assertEquals(2, tokens.longValue(0));
+        assertEquals(7, tokens.longValue(1));
+        assertEquals(7.0, tokens.doubleValue(1));
+    }
+
+    @Test
+    void integerTooLarge() {
+        assertTooLarge("9223372036854775808", "Integer literal too large.");
+        assertTooLarge("99999999999999999999999", "Integer literal too large.");
+    }
+
+    @Test
+    void decimalTooLarge() {
+        assertTooLarge("1" + "0".repeat(400) + ".0", "Decimal literal too large.");
+    }
+
+    @Test
+    void valuesOfOtherTokensAreRejected() {
+        TokenBuffer tokens = lex("x 1");
+        assertThrows(IllegalArgumentException.class, () -> tokens.longValue(0));
+        assertThrows(IllegalArgumentException.class, () -> tokens.isDecimal(0));
+        assertFalse(tokens.isDecimal(1));
+
+        TokenCursor cursor = new Lexer("x", null).cursor();
+        assertTrue(cursor.advance());
+        assertThrows(IllegalStateException.class, cursor::doubleValue);
+    }
+
+    private static void assertInteger(String text, long expected) {
+        for (CharSequence source : sources("x = " + text + ";")) {
+            TokenBuffer tokens = lex(source);
+            assertEquals(TokenType.NUMBER, tokens.type(2), text);
+            assertFalse(tokens.isDecimal(2), text);
+            assertEquals(expected, tokens.longValue(2), text);
+            assertEquals((double) expected, tokens.doubleValue(2), text);
+
+            TokenCursor cursor = cursorAt(source, 2);
+            assertFalse(cursor.isDecimal(), text);
+            assertEquals(expected, cursor.longValue(), text);
+        }
+    }
+
+    private static void assertDecimal(String text, double expected) {
+        for (CharSequence source : sources("x = " + text + ";")) {
+            TokenBuffer tokens = lex(source);
+            assertEquals(TokenType.NUMBER, tokens.type(2), text);
+            assertTrue(tokens.isDecimal(2), text);
+            assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(tokens.doubleValue(2)), text);
+
+            TokenCursor cursor = cursorAt(source, 2);
+            assertTrue(cursor.isDecimal(), text);
+            assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(cursor.doubleValue()), text);
+        }
+    }
+
+    private static void assertTooLarge(String text, String message) {
+        for (CharSequence source : sources("x = " + text + ";")) {
+            DiagnosticCollector diagnostics = new DiagnosticCollector();
+            new Lexer(source, "test.k", diagnostics).tokenizeToBuffer();
+            assertEquals(1, diagnostics.all().size(), diagnostics.all().toString());
+            Diagnostic d = diagnostics.all().get(0);
+            assertEquals(message, d.message);
+            assertEquals(5, d.primarySpan.startColumn, "reported at the start of the literal");
+
+            DiagnosticException e = assertThrows(DiagnosticException.class,
+                    () -> new Lexer(source, "test.k").tokenizeToBuffer());
+            assertEquals(message, e.diagnostic.message);
+        }
+    }
+
+    private static List<CharSequence> sources(String text) {
+        return List.of(text, Utf8Source.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static TokenBuffer lex(CharSequence source) {
+        return new Lexer(source, null).tokenizeToBuffer();
+    }
+
+    private static TokenCursor cursorAt(CharSequence source, int index) {
+        TokenCursor cursor = new Lexer(source, null).cursor();
+        for (int i = 0; i <= index; i++) {
+            assertTrue(cursor.advance());
+        }
+        return cursor;
+    }
+}
@@ -0,0 +1,221 @@
+package org.klang.core.lexer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.klang.core.errors.Diagnostic;
+import org.klang.core.errors.DiagnosticCollector;
+import org.klang.core.errors.DiagnosticException;
+
+/**
+ * Checks that {@link ParallelLexer} gives exactly the tokens and diagnostics
+ * of a sequential {@link Lexer#tokenizeToBuffer()}, in both modes, on
+ * generated sources around and well above the size where it starts to split
+ * them, with block comments crossing the chunk boundaries.
+ */
+class ParallelLexerTest {
+    private static final int CHUNK = ParallelLexer.MIN_CHUNK_SIZE;
+    private static final ForkJoinPool POOL = new ForkJoinPool(4); // chunks of CHUNK below 16 chunks
+
+    private static final String[] LINES = {
+            "integer x = 1_000;",
+            "double d = 2.5 * (x + 3);",
+            "string s = \"a \\\"quoted\\\" wörd\";",
+            "character c = '\\n';",
+            "// a line comment with \" and /* in it",
+            "println(s + c + d);",
+            "if (x >= 10) { x = x - 1; }",
+            "",
+    };
+
+    private static final String[] BAD_LINES = {
+            "x = a &b;",
+            "s = \"bad \\q escape\";",
+            "y = 12abc;",
+            "t = \"unterminated",
+            "c = '';",
+    };
+
+    @AfterAll
+    static void shutdown() {
+        POOL.shutdownNow();
+    }
+
+    @Test
+    void columnsAfterMultiLineComment() {
+        // the line closing the comment counts its columns from its own start
+        String source = "x = 1;\n/* one\n   two */ #\n";
+        for (boolean parallel : new boolean[] { false, true }) {
+            DiagnosticCollector diagnostics = new DiagnosticCollector();
+            if (parallel) {
+                ParallelLexer.tokenize(source, "test.k", diagnostics, POOL);
+            } else {
+                new Lexer(source, "test.k", diagnostics).tokenizeToBuffer();
+            }
+
+            assertEquals(1, diagnostics.all().size(), diagnostics.all().toString());
+            Diagnostic d = diagnostics.all().get(0);
+            assertEquals(3, d.primarySpan.startLine);
+            assertEquals(11, d.primarySpan.startColumn);
+        }
+    }
+
+    @Test
+    void sizesAroundTwoChunks() {
+        for (int length : new int[] { 2 * CHUNK - 1, 2 * CHUNK, 2 * CHUNK + 1 }) {
+            String source = generate(new Random(length), length, false);
+            assertSameAsSequential(source, false);
+            assertSameAsSequential(source, true);
+
+            String withErrors = generate(new Random(length), length, true);
+            assertSameAsSequential(withErrors, true);
+        }
+    }
+
+    @Test
+    void manyChunksWithErrors() {
+        for (int seed = 0; seed < 3; seed++) {
+            String source = generate(new Random(seed), 5 * CHUNK + 12_345, true);
+            assertSameAsSequential(source, true);
+        }
+    }
+
+    @Test
+    void utf8SourceAsKcLexReadsIt() {
+        String text = generate(new Random(5), 3 * CHUNK, true);
+        assertSameAsSequential(Utf8Source.wrap(text.getBytes(StandardCharsets.UTF_8)), true);
+    }
+
+    @Test
+    void commentSpanningWholeChunks() {
+        // opens in the first chunk and closes in the third: the speculative
+        // lexes of the second and third chunk are wrong and hold errors
+        Random random = new Random(7);
+        StringBuilder source = new StringBuilder();
+        appendLines(source, random, CHUNK / 2, false);
+        source.append("/* from here\n");
+        appendLines(source, random, 2 * CHUNK + CHUNK / 2, true);
+        source.append("*/ integer after = 1;\n");
+        appendLines(source, random, 4 * CHUNK, false);
+
+        assertSameAsSequential(source.toString(), false);
+        assertSameAsSequential(source.toString(), true);
+    }
+
+    @Test
+    void unterminatedCommentAcrossChunks() {
+        Random random = new Random(11);
+        StringBuilder source = new StringBuilder();
+        appendLines(source, random, CHUNK + CHUNK / 2, false);
+        source.append("/* never closed\n");
+        appendLines(source, random, 3 * CHUNK, true);
+
+        assertSameAsSequential(source.toString(), false);
+        assertSameAsSequential(source.toString(), true);
+    }
+
+    @Test
+    void firstErrorIsThrownInThrowingMode() {
+        String source = generate(new Random(3), 3 * CHUNK, false) + "\n" + "x = a &b;\n"
+                + generate(new Random(4), CHUNK, true);
+
+        DiagnosticException sequential = assertThrows(DiagnosticException.class,
+                () -> new Lexer(source, "test.k").tokenizeToBuffer());
+        DiagnosticException parallel = assertThrows(DiagnosticException.class,
+                () -> ParallelLexer.tokenize(source, "test.k", null, POOL));
+
+        assertEquals(describe(sequential.diagnostic), describe(parallel.diagnostic));
+    }
+
+    /**
+     * Generates about {@code length} characters of source, padded with spaces
+     * to exactly that length. Block comments of a few lines are sprinkled
+     * in, and forced across every multiple of the chunk size.
+     */
+    private static String generate(Random random, int length, boolean errors) {
+        StringBuilder source = new StringBuilder(length);
+        int boundary = CHUNK;
+        while (source.length() < length - 200) {
+            if (source.length() > boundary - 100) {
+                source.append("/* across a boundary # \"\n");
+                appendLines(source, random, Math.min(length - 100, boundary + 100), errors);
+                source.append(" */ ");
+                boundary += CHUNK;
+            } else if (random.nextInt(50) == 0) {
+                source.append("/* short # '\n");
+                appendLines(source, random, Math.min(length - 100, source.length() + random.nextInt(300)), errors);
+                source.append("*/\n");
+            } else {
+                appendLine(source, random, errors);
+            }
+        }
+        source.setLength(Math.min(source.length(), length));
+        while (source.length() < length) {
+            source.append(' ');
+        }
+        return source.toString();
+    }
+
+    private static void appendLines(StringBuilder source, Random random, int until, boolean errors) {
+        while (source.length() < until) {
+            appendLine(source, random, errors);
+        }
+    }
+
+    private static void appendLine(StringBuilder source, Random random, boolean errors) {
+        String[] lines = errors && random.nextInt(20) == 0 ? BAD_LINES : LINES;
+        source.append(lines[random.nextInt(lines.length)]).append('\n');
+    }
+
+    private static void assertSameAsSequential(CharSequence source, boolean recover) {
+        if (!recover) {
+            TokenBuffer expected;
+            try {
+                expected = new Lexer(source, "test.k").tokenizeToBuffer();
+            } catch (DiagnosticException e) {
+                DiagnosticException parallel = assertThrows(DiagnosticException.class,
+                        () -> ParallelLexer.tokenize(source, "test.k", null, POOL));
+                assertEquals(describe(e.diagnostic), describe(parallel.diagnostic));
+                return;
+            }
+            assertSameTokens(expected, ParallelLexer.tokenize(source, "test.k", null, POOL));
+            return;
+        }
+
+        DiagnosticCollector expectedDiagnostics = new DiagnosticCollector();
+        TokenBuffer expected = new Lexer(source, "test.k", expectedDiagnostics).tokenizeToBuffer();
+        DiagnosticCollector actualDiagnostics = new DiagnosticCollector();
+        TokenBuffer actual = ParallelLexer.tokenize(source, "test.k", actualDiagnostics, POOL);
+
+        assertSameTokens(expected, actual);
+        assertEquals(describe(expectedDiagnostics.all()), describe(actualDiagnostics.all()));
+    }
+
+    private static void assertSameTokens(TokenBuffer expected, TokenBuffer actual) {
+        assertTrue(expected.size() > 1);
+        for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+            if (expected.type(i) != actual.type(i) || expected.start(i) != actual.start(i)
+                    || expected.end(i) != actual.end(i)) {
+                fail("token " + i + ": expected " + expected.get(i) + ", got " + actual.get(i));
+            }
+        }
+        assertEquals(expected.size(), actual.size(), "token count");
+    }
+
+    private static List<String> describe(List<Diagnostic> diagnostics) {
+        return diagnostics.stream().map(ParallelLexerTest::describe).toList();
+    }
+
+    private static String describe(Diagnostic d) {
+        return d.primarySpan + " " + d.message;
+    }
+}
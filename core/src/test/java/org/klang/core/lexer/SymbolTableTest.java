@@ -0,0 +1,154 @@
+package org.klang.core.lexer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a {@link SymbolTable} hands out one dense ID per name when many
+ * threads intern the same names at once, whatever the order and whatever kind
+ * of source the name is read from.
+ */
+class SymbolTableTest {
+    private static final int THREADS = 8;
+    private static final int NAMES = 20_000;
+
+    @Test
+    void concurrentInterningGivesStableIds() throws Exception {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < NAMES; i++) {
+            names.add((i % 7 == 0 ? "ñame" : "name") + i);
+        }
+
+        SymbolTable table = new SymbolTable();
+        List<int[]> results = runConcurrently(t -> {
+            // each thread interns every name, in its own order and from its own kind of source
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < NAMES; i++) {
+                order.add(i);
+            }
+            Collections.shuffle(order, new Random(t));
+
+            int[] ids = new int[NAMES];
+            for (int i : order) {
+                ids[i] = intern(table, names.get(i), t % 3);
+            }
+            return ids;
+        });
+
+        int[] first = results.get(0);
+        for (int[] ids : results) {
+            for (int i = 0; i < NAMES; i++) {
+                assertEquals(first[i], ids[i], names.get(i));
+            }
+        }
+
+        Set<Integer> distinct = new HashSet<>();
+        for (int i = 0; i < NAMES; i++) {
+            assertEquals(names.get(i), table.name(first[i]));
+            distinct.add(first[i]);
+        }
+        assertEquals(NAMES, distinct.size(), "two names share an ID");
+        assertEquals(NAMES, table.size());
+        assertEquals(0, Collections.min(distinct));
+        assertEquals(NAMES - 1, Collections.max(distinct), "IDs are not dense");
+    }
+
+    @Test
+    void lexersOnManyThreadsAgreeOnSymbols() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            text.append("integer v").append(i % 500).append(" = w").append(i % 300).append(" + ĉu;\n");
+        }
+        String source = text.toString();
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+
+        SymbolTable table = new SymbolTable();
+        List<int[]> results = runConcurrently(t -> {
+            CharSequence input = t % 2 == 0 ? source : Utf8Source.wrap(bytes);
+            TokenBuffer tokens = new Lexer(input, null).withSymbols(table).tokenizeToBuffer();
+
+            int[] symbols = new int[tokens.size()];
+            for (int i = 0; i < tokens.size(); i++) {
+                symbols[i] = tokens.symbol(i);
+                if (tokens.type(i) == TokenType.IDENTIFIER) {
+                    assertEquals(tokens.text(i).toString(), table.name(symbols[i]));
+                } else {
+                    assertEquals(TokenBuffer.NO_SYMBOL, symbols[i]);
+                }
+            }
+            return symbols;
+        });
+
+        for (int[] symbols : results) {
+            assertEquals(results.get(0).length, symbols.length);
+            for (int i = 0; i < symbols.length; i++) {
+                assertEquals(results.get(0)[i], symbols[i], "token " + i);
+            }
+        }
+        assertEquals(500 + 300 + 1, table.size());
+        assertNotEquals(table.intern("v1"), table.intern("w1"));
+    }
+
+    /**
+     * Interns a name read from a String, from the middle of a larger
+     * StringBuilder, or from UTF-8 bytes.
+     */
+    private static int intern(SymbolTable table, String name, int kind) {
+        return switch (kind) {
+            case 0 -> table.intern(name);
+            case 1 -> {
+                StringBuilder around = new StringBuilder("(").append(name).append(")");
+                yield table.intern(around, 1, around.length() - 1);
+            }
+            default -> {
+                Utf8Source bytes = Utf8Source.wrap(("(" + name + ")").getBytes(StandardCharsets.UTF_8));
+                yield table.intern(bytes, 1, bytes.length() - 1);
+            }
+        };
+    }
+
+    private interface Work {
+        int[] run(int thread) throws Exception;
+    }
+
+    /**
+     * Runs the work on {@value #THREADS} threads released at once.
+     */
+    private static List<int[]> runConcurrently(Work work) throws Exception {
+        CyclicBarrier start = new CyclicBarrier(THREADS);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<int[]>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return work.run(thread);
+                }));
+            }
+
+            List<int[]> results = new ArrayList<>();
+            for (Future<int[]> future : futures) {
+                results.add(future.get(1, TimeUnit.MINUTES));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package org.klang.core.lexer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a cached token stream reads back identical to the one stored,
+ * and that an entry whose token arrays are damaged is a miss rather than a
+ * buffer pointing outside its source.
+ */
+class TokenCacheTest {
+    private static final String SOURCE = """
+            integer x = 1_000;
+            double d = 2.5 * x;
+            string s = "a\\tb";
+            character c = 'é';
+            println(s + c);
+            """;
+
+    // entry layout, see TokenCache and TokenBuffer#writeTo
+    private static final int HEADER = 56;
+    private static final int COUNT = HEADER;
+    private static final int TYPES = HEADER + 8;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTrip() {
+        TokenCache cache = new TokenCache(directory, TokenCache.DEFAULT_MAX_SIZE);
+        for (CharSequence source : List.of(SOURCE, utf8(SOURCE + "x;"))) {
+            TokenBuffer tokens = new Lexer(source, null).tokenizeToBuffer();
+            cache.put(source, tokens);
+
+            TokenBuffer cached = cache.get(source);
+            assertNotNull(cached);
+            assertEquals(describe(tokens), describe(cached));
+        }
+    }
+
+    @Test
+    void otherSourceIsMiss() {
+        TokenCache cache = new TokenCache(directory, TokenCache.DEFAULT_MAX_SIZE);
+        cache.put(SOURCE, new Lexer(SOURCE, null).tokenizeToBuffer());
+
+        assertNull(cache.get(SOURCE.replace('x', 'y')));
+        assertNull(cache.get(SOURCE + " "));
+    }
+
+    @Test
+    void countLargerThanDataIsMiss() throws IOException {
+        assertCorruptionIsMiss(entry -> entry.putInt(COUNT, entry.getInt(COUNT) + 1));
+        assertCorruptionIsMiss(entry -> entry.putInt(COUNT, Integer.MAX_VALUE));
+        assertCorruptionIsMiss(entry -> entry.putInt(COUNT, -1));
+    }
+
+    @Test
+    void truncatedEntryIsMiss() throws IOException {
+        assertCorruptionIsMiss(entry -> entry.limit(entry.limit() - 8));
+        assertCorruptionIsMiss(entry -> entry.limit(HEADER + 4));
+    }
+
+    @Test
+    void unknownTokenTypeIsMiss() throws IOException {
+        assertCorruptionIsMiss(entry -> entry.put(TYPES + 3, (byte) TokenType.values().length));
+        assertCorruptionIsMiss(entry -> entry.put(TYPES, (byte) -1));
+    }
+
+    @Test
+    void offsetsOutsideSourceAreMiss() throws IOException {
+        assertCorruptionIsMiss(entry -> entry.putInt(ends(entry) + 4 * 2, SOURCE.length() + 1));
+        assertCorruptionIsMiss(entry -> entry.putInt(starts(entry) + 4 * 2, -5));
+        assertCorruptionIsMiss(entry -> entry.putInt(starts(entry) + 4 * 3, entry.getInt(ends(entry) + 4 * 3) + 1));
+        // a token starting before the previous one ends
+        assertCorruptionIsMiss(entry -> entry.putInt(starts(entry) + 4 * 4, 0));
+    }
+
+    /**
+     * Stores the tokens of {@link #SOURCE}, damages the entry on disk and
+     * checks that it is no longer a hit.
+     */
+    private void assertCorruptionIsMiss(Consumer<ByteBuffer> damage) throws IOException {
+        Path dir = Files.createTempDirectory(directory, "cache");
+        TokenCache cache = new TokenCache(dir, TokenCache.DEFAULT_MAX_SIZE);
+        cache.put(SOURCE, new Lexer(SOURCE, null).tokenizeToBuffer());
+        assertNotNull(cache.get(SOURCE), "the intact entry is a hit");
+
+        Path file;
+        try (Stream<Path> files = Files.list(dir)) {
+            file = files.filter(p -> p.toString().endsWith(".tok")).findFirst().orElseThrow();
+        }
+        ByteBuffer entry = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+        damage.accept(entry);
+        byte[] damaged = new byte[entry.limit()];
+        entry.position(0).get(damaged);
+        Files.write(file, damaged);
+
+        assertNull(cache.get(SOURCE));
+    }
+
+    private static int starts(ByteBuffer entry) {
+        return TYPES + align(entry.getInt(COUNT));
+    }
+
+    private static int ends(ByteBuffer entry) {
+        return starts(entry) + 4 * entry.getInt(COUNT);
+    }
+
+    private static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    private static String describe(TokenBuffer tokens) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < tokens.size(); i++) {
+            TokenType type = tokens.type(i);
+            out.append(type).append('@').append(tokens.start(i)).append('-').append(tokens.end(i));
+            if (type == TokenType.NUMBER) {
+                out.append(tokens.isDecimal(i) ? " decimal " : " ").append(tokens.doubleValue(i));
+            } else if (type == TokenType.STRING_LITERAL || type == TokenType.CHARACTER_LITERAL) {
+                out.append(tokens.hasEscapes(i) ? " escaped " : " ").append(tokens.literal(i));
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+
+    private static Utf8Source utf8(String text) {
+        return Utf8Source.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,104 @@
+package org.klang.core.lexer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.klang.core.errors.Diagnostic;
+import org.klang.core.errors.DiagnosticCollector;
+import org.klang.core.errors.DiagnosticException;
+
+/**
+ * Checks that lexing raw UTF-8 bytes gives the same tokens and diagnostics as
+ * lexing the decoded String, and that malformed UTF-8 inside literals is
+ * reported as it is in identifiers.
+ */
+class Utf8LexingTest {
+
+    @Test
+    void invalidBytesInStringAreReported() {
+        byte[] source = { 'x', ' ', '=', ' ', '"', (byte) 0xFF, (byte) 0xFE, '"', ';' };
+        assertInvalidUtf8(source, 5);
+    }
+
+    @Test
+    void invalidBytesAfterValidTextInStringAreReported() {
+        byte[] source = { '"', (byte) 0xC3, (byte) 0xA9, 'a', (byte) 0xE2, (byte) 0x82, '"' };
+        assertInvalidUtf8(source, 3);
+    }
+
+    @Test
+    void invalidByteInCharacterIsReported() {
+        byte[] source = { 'c', ' ', '=', ' ', '\'', (byte) 0x80, '\'', ';' };
+        assertInvalidUtf8(source, 5);
+    }
+
+    @Test
+    void nonAsciiLiteralsMatchStringMode() {
+        String text = "s = \"héllo wörld ✓ 𝄞 \\t\"; c = 'é'; d = '𝄞'; t = \"" + "ü".repeat(100) + "\";";
+        TokenBuffer fromString = lex(text, new DiagnosticCollector());
+        DiagnosticCollector diagnostics = new DiagnosticCollector();
+        TokenBuffer fromBytes = lex(utf8(text), diagnostics);
+
+        assertTrue(diagnostics.all().isEmpty(), diagnostics.all().toString());
+        assertEquals(fromString.size(), fromBytes.size());
+        for (int i = 0; i < fromString.size(); i++) {
+            assertEquals(fromString.type(i), fromBytes.type(i));
+            if (fromString.type(i) == TokenType.STRING_LITERAL || fromString.type(i) == TokenType.CHARACTER_LITERAL) {
+                assertEquals(fromString.literal(i), fromBytes.literal(i));
+            }
+        }
+    }
+
+    @Test
+    void invalidEscapeNamesTheDecodedCharacter() {
+        for (String text : List.of("s = \"a\\éb\";", "c = '\\é';")) {
+            for (CharSequence source : List.of(text, utf8(text))) {
+                DiagnosticCollector diagnostics = new DiagnosticCollector();
+                lex(source, diagnostics);
+
+                assertEquals(1, diagnostics.all().size(), diagnostics.all().toString());
+                Diagnostic d = diagnostics.all().get(0);
+                assertTrue(d.message.endsWith("\\é"), d.message);
+            }
+        }
+    }
+
+    @Test
+    void columnsCountCharactersNotBytes() {
+        String text = "s = \"ééé\\q\";";
+        int column = firstError(text).primarySpan.startColumn;
+        assertEquals(column, firstError(utf8(text)).primarySpan.startColumn);
+    }
+
+    private static void assertInvalidUtf8(byte[] bytes, int column) {
+        DiagnosticCollector diagnostics = new DiagnosticCollector();
+        lex(Utf8Source.wrap(bytes), diagnostics);
+
+        assertEquals(1, diagnostics.all().size(), diagnostics.all().toString());
+        Diagnostic d = diagnostics.all().get(0);
+        assertEquals("Invalid UTF-8 sequence.", d.message);
+        assertEquals(column + 1, d.primarySpan.startColumn);
+
+        assertThrows(DiagnosticException.class,
+                () -> new Lexer(Utf8Source.wrap(bytes), "test.k").tokenizeToBuffer());
+    }
+
+    private static Diagnostic firstError(CharSequence source) {
+        DiagnosticCollector diagnostics = new DiagnosticCollector();
+        lex(source, diagnostics);
+        return diagnostics.all().get(0);
+    }
+
+    private static TokenBuffer lex(CharSequence source, DiagnosticCollector diagnostics) {
+        return new Lexer(source, "test.k", diagnostics).tokenizeToBuffer();
+    }
+
+    private static Utf8Source utf8(String text) {
+        return Utf8Source.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,132 @@
+package org.klang.core.lexer;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link SourceScanner} over UTF-8 bytes that compares a whole vector of
+ * bytes (16 to 64, depending on the CPU) per step. Heap sources are loaded
+ * straight from their array; memory-mapped ones through a window of a few KB
+ * copied at a time. Ranges shorter than a vector are finished by the scalar
+ * loops.
+ * <p>
+ * Every vector is loaded, compared and reduced inside the loop that uses it:
+ * a vector passed to or returned from a call C2 does not inline (as happens
+ * to small helpers at the low-frequency call sites of the lexer) is boxed
+ * on the heap.
+ * <p>
+ * Only loaded through {@link SourceScanner#of(CharSequence)}, when it is
+ * enabled and {@code jdk.incubator.vector} is available.
+ */
+final class VectorSourceScanner extends SourceScanner {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+    private static final int WINDOW = 4096; // bytes copied at a time from a mapped source
+
+    private final Utf8Source utf8;
+    // bytes[i + shift] is the byte at offset i, for i in [windowStart, windowEnd)
+    private byte[] bytes;
+    private int shift;
+    private int windowStart;
+    private int windowEnd;
+
+    VectorSourceScanner(Utf8Source utf8) {
+        super(utf8);
+        this.utf8 = utf8;
+        if (utf8.array() != null) {
+            this.bytes = utf8.array();
+            this.shift = utf8.arrayOffset();
+            this.windowEnd = utf8.length();
+        } else {
+            this.bytes = new byte[Math.max(WINDOW, LANES)];
+        }
+    }
+
+    /**
+     * Moves the window of a mapped source to start at {@code index}. The caller
+     * only loads below {@code length - LANES}, so the window holds a full
+     * vector.
+     */
+    private void slide(int index) {
+        int length = Math.min(bytes.length, utf8.length() - index);
+        utf8.copy(index, bytes, length);
+        shift = -index;
+        windowStart = index;
+        windowEnd = index + length;
+    }
+
+    @Override
+    int skipWhitespace(int from, int to) {
+        int i = from;
+        for (; i + LANES <= to; i += LANES) {
+            if (i < windowStart || i + LANES > windowEnd) {
+                slide(i);
+            }
+            ByteVector v = ByteVector.fromArray(SPECIES, bytes, i + shift);
+            // ' ', '\t'..'\r' and the separators 0x1C..0x1F (Character.isWhitespace)
+            VectorMask<Byte> whitespace = v.eq((byte) ' ')
+                    .or(v.compare(VectorOperators.GE, (byte) 0x09).and(v.compare(VectorOperators.LE, (byte) 0x0D)))
+                    .or(v.compare(VectorOperators.GE, (byte) 0x1C).and(v.compare(VectorOperators.LE, (byte) 0x1F)));
+
+            int other = whitespace.not().firstTrue();
+            if (other < LANES) {
+                return i + other;
+            }
+        }
+        return super.skipWhitespace(i, to);
+    }
+
+    @Override
+    int indexOfLineBreak(int from, int to) {
+        int i = from;
+        for (; i + LANES <= to; i += LANES) {
+            if (i < windowStart || i + LANES > windowEnd) {
+                slide(i);
+            }
+            int found = ByteVector.fromArray(SPECIES, bytes, i + shift).eq((byte) '\n').firstTrue();
+            if (found < LANES) {
+                return i + found;
+            }
+        }
+        return super.indexOfLineBreak(i, to);
+    }
+
+    @Override
+    int indexOfCommentEnd(int from, int to) {
+        int i = from;
+        for (; i + LANES <= to; i += LANES) {
+            if (i < windowStart || i + LANES > windowEnd) {
+                slide(i);
+            }
+            long stars = ByteVector.fromArray(SPECIES, bytes, i + shift).eq((byte) '*').toLong();
+            while (stars != 0) {
+                int star = i + Long.numberOfTrailingZeros(stars);
+                if (star + 1 < to && utf8.charAt(star + 1) == '/') {
+                    return star;
+                }
+                stars &= stars - 1;
+            }
+        }
+        return super.indexOfCommentEnd(i, to);
+    }
+
+    @Override
+    int indexOfStringSpecial(int from, int to) {
+        int i = from;
+        for (; i + LANES <= to; i += LANES) {
+            if (i < windowStart || i + LANES > windowEnd) {
+                slide(i);
+            }
+            ByteVector v = ByteVector.fromArray(SPECIES, bytes, i + shift);
+            // a non-ASCII byte is negative
+            int found = v.eq((byte) '"').or(v.eq((byte) '\\')).or(v.eq((byte) '\n'))
+                    .or(v.compare(VectorOperators.LT, (byte) 0)).firstTrue();
+            if (found < LANES) {
+                return i + found;
+            }
+        }
+        return super.indexOfStringSpecial(i, to);
+    }
+}
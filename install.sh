@@ -16,6 +16,20 @@ echo "Copying cli/build/libs/k.jar to /usr/local/klang/klang.jar ..."
 
 sudo cp cli/build/libs/k.jar /usr/local/klang/klang.jar && echo "klang.jar copied successfully." || { echo "Failed to copy klang.jar."; exit 1; } 
 
+echo "Creating the class data archive /usr/local/klang/klang.jsa ..."
+sudo rm -f /usr/local/klang/klang.jsa
+JAVA="$(command -v java)"
+sudo env KLANG_NO_DAEMON=1 "$JAVA" -XX:ArchiveClassesAtExit=/usr/local/klang/klang.jsa \
+    -jar /usr/local/klang/klang.jar lex "$PROJECT_DIR"/examples/*.k > /dev/null 2>&1 || true
+# -Xshare:on fails instead of ignoring an archive that does not map, so this checks k can use it
+if [ -f /usr/local/klang/klang.jsa ] && "$JAVA" -Xshare:on -XX:SharedArchiveFile=/usr/local/klang/klang.jsa \
+        -jar /usr/local/klang/klang.jar -V > /dev/null 2>&1; then
+    echo "klang.jsa created."
+else
+    sudo rm -f /usr/local/klang/klang.jsa
+    echo "Could not create klang.jsa; k will start without it."
+fi
+
 echo "Copying k to /usr/local/bin/k" 
 sudo cp "$PROJECT_DIR/cli/bin/k" /usr/local/bin/k && echo "k copied to /usr/local/bin/k successfully." || { echo "Failed to copy script k."; exit 1; } 
 
@@ -14,3 +14,4 @@ rootProject.name = "klang"
 include("cli")
 include("core")
 include("stdlib")
+include("benchmarks")